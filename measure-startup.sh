@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+#
+# Measures Journal's cold start: the time from a new JVM starting until the
+# window's first frame has been drawn, as printed by the app when run with
+# -Djournal.measure-startup=true. Each configuration is started the given
+# number of times and the fastest, median and slowest are printed.
+#
+#   ./measure-startup.sh [runs]            the build in target/, without and
+#                                          with the AOT cache of `mvn -Paot
+#                                          prepare-package` if there is one
+#   ./measure-startup.sh [runs] flatpak    the installed flatpak
+#
+# Set DROP_CACHES=1 to also empty the kernel's page cache before each run
+# (uses sudo), so the JDK and the jars are read from disk as after a reboot.
+
+set -euo pipefail
+cd "$(dirname "$0")"
+
+runs=${1:-10}
+mode=${2:-build}
+app=ca.footeware.javagi.journal
+
+# starts the app once with the provided command, printing its startup time
+run() {
+	if [[ ${DROP_CACHES:-0} == 1 ]]; then
+		sync
+		echo 3 | sudo tee /proc/sys/vm/drop_caches >/dev/null
+	fi
+	"$@" 2>/dev/null | sed -n 's/^Started in \([0-9]*\) ms$/\1/p'
+}
+
+# starts the app the given number of times, printing the fastest, median and
+# slowest startup time
+measure() {
+	local label=$1
+	shift
+	local times=()
+	for ((i = 0; i < runs; i++)); do
+		local time
+		time=$(run "$@")
+		if [[ -z $time ]]; then
+			echo "$label: the app didn't report its startup time" >&2
+			return 1
+		fi
+		times+=("$time")
+	done
+	local sorted
+	sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+	printf '%-20s fastest %5d ms   median %5d ms   slowest %5d ms   (%d runs)\n' "$label" \
+		"${sorted[0]}" "${sorted[$((runs / 2))]}" "${sorted[$((runs - 1))]}" "$runs"
+}
+
+if [[ $mode == flatpak ]]; then
+	# the first run makes the class archive, so it isn't counted
+	run flatpak run --env=JDK_JAVA_OPTIONS=-Djournal.measure-startup=true "$app" >/dev/null
+	measure "flatpak" flatpak run --env=JDK_JAVA_OPTIONS=-Djournal.measure-startup=true "$app"
+	exit
+fi
+
+if [[ ! -d target/classes ]]; then
+	mvn -B -q compile
+fi
+if [[ ! -f target/classpath.txt || pom.xml -nt target/classpath.txt ]]; then
+	mvn -B -q dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+fi
+classpath=target/classes:$(cat target/classpath.txt)
+java=(java --enable-native-access=ALL-UNNAMED -Djournal.measure-startup=true)
+
+measure "no AOT cache" "${java[@]}" -classpath "$classpath" "$app.JournalApplication"
+if [[ -f target/journal.aot ]]; then
+	measure "AOT cache" "${java[@]}" -XX:AOTCache=target/journal.aot -classpath "$classpath" "$app.JournalApplication"
+else
+	echo "no target/journal.aot; build it with: mvn -Paot prepare-package"
+fi
@@ -0,0 +1,103 @@
+package ca.footeware.javagi.journal;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The editor's work per keystroke, by entry size in bytes. A keystroke now only
+ * counts the edit; before, {@link JournalWindow} also copied the whole buffer
+ * into a String. That copy is modelled here as java-gi makes it, decoding the
+ * UTF-8 text GTK returns from native memory; the TextIters and the copy GTK
+ * makes itself came on top and need a display, so they aren't timed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class EditorTextBenchmark {
+
+	private static final byte[] SENTENCE = "Went for a long walk by the river, café au lait after. "
+			.getBytes(StandardCharsets.UTF_8);
+
+	@Param({ "1000", "10000", "100000", "500000" })
+	public int size;
+
+	private Arena arena;
+	private MemorySegment buffer;
+	private int edits;
+
+	/**
+	 * Types a character, counting the edit.
+	 *
+	 * @return int the number of edits
+	 */
+	@Benchmark
+	public int keystroke() {
+		return type();
+	}
+
+	/**
+	 * Types a character, counting the edit and copying the buffer's text.
+	 *
+	 * @return {@link String}
+	 */
+	@Benchmark
+	public String keystrokeCopyingText() {
+		type();
+		return buffer.getString(0);
+	}
+
+	/**
+	 * Fills a native buffer with text of the provided size, as GTK would return
+	 * it.
+	 */
+	@Setup
+	public void setUp() {
+		byte[] text = new byte[size];
+		for (int i = 0; i < size; i += SENTENCE.length) {
+			System.arraycopy(SENTENCE, 0, text, i, Math.min(SENTENCE.length, size - i));
+		}
+		// a character cut short at the end would be decoded as a replacement
+		Arrays.fill(text, Math.max(0, size - 4), size, (byte) ' ');
+		arena = Arena.ofConfined();
+		buffer = arena.allocate(size + 1L);
+		MemorySegment.copy(text, 0, buffer, ValueLayout.JAVA_BYTE, 0, size);
+	}
+
+	/**
+	 * Frees the buffer.
+	 */
+	@TearDown
+	public void tearDown() {
+		arena.close();
+	}
+
+	/**
+	 * Overwrites the first character of the buffer and counts the edit.
+	 *
+	 * @return int the number of edits
+	 */
+	private int type() {
+		buffer.set(ValueLayout.JAVA_BYTE, 0, (byte) ('a' + edits % 26));
+		return ++edits;
+	}
+}
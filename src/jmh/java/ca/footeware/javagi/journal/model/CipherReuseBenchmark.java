@@ -0,0 +1,97 @@
+package ca.footeware.javagi.journal.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encrypting an entry with the shared DRBG and this thread's cipher, and as
+ * before them, with a strong {@link SecureRandom} and a {@link Cipher} looked
+ * up for every entry. Sampled so the percentiles show the stalls of a blocking
+ * random source, not just the average.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class CipherReuseBenchmark {
+
+	private byte[] bytes;
+	private String entry;
+	private SecretKey key;
+
+	/**
+	 * Encrypts an entry as {@link Superstar#encrypt(String, SecretKey)} does.
+	 *
+	 * @return {@link String}
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public String encrypt() throws GeneralSecurityException {
+		return Superstar.encrypt(entry, key);
+	}
+
+	/**
+	 * Encrypts an entry's bytes, without the String round trips.
+	 *
+	 * @return byte array
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public byte[] encryptBytes() throws GeneralSecurityException {
+		return Superstar.encrypt(bytes, key);
+	}
+
+	/**
+	 * Encrypts an entry as {@link Superstar} did before it kept a DRBG and
+	 * ciphers.
+	 *
+	 * @return {@link String}
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public String encryptFresh() throws GeneralSecurityException {
+		byte[] iv = new byte[12];
+		SecureRandom.getInstanceStrong().nextBytes(iv);
+		Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+		byte[] encrypted = cipher.doFinal(entry.getBytes(StandardCharsets.UTF_8));
+		byte[] combined = new byte[1 + iv.length + encrypted.length];
+		combined[0] = 2;
+		System.arraycopy(iv, 0, combined, 1, iv.length);
+		System.arraycopy(encrypted, 0, combined, 1 + iv.length, encrypted.length);
+		return Base64.getEncoder().encodeToString(combined);
+	}
+
+	/**
+	 * Derives the key and generates an entry of a typical length.
+	 *
+	 * @throws GeneralSecurityException
+	 */
+	@Setup
+	public void setUp() throws GeneralSecurityException {
+		key = Superstar.generateAESKey(SyntheticJournal.PASSWORD, Superstar.generateSalt());
+		entry = SyntheticJournal.entry(new Random(0));
+		bytes = entry.getBytes(StandardCharsets.UTF_8);
+	}
+}
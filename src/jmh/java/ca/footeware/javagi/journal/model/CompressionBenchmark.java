@@ -0,0 +1,113 @@
+package ca.footeware.javagi.journal.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encrypting and decrypting a corpus of entries of typical lengths, with and
+ * without compression. The size the corpus is stored in either way is printed
+ * when the benchmark starts. The synthetic entries repeat a small vocabulary,
+ * so they compress better than real prose would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class CompressionBenchmark {
+
+	private static final int ENTRIES = 200;
+
+	@Param({ "false", "true" })
+	public boolean compress;
+
+	private byte[][] ciphertexts;
+	private SecretKey key;
+	private byte[][] plaintexts;
+
+	/**
+	 * Decrypts the corpus.
+	 *
+	 * @return int the number of bytes decrypted
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public int decrypt() throws GeneralSecurityException {
+		int size = 0;
+		for (byte[] ciphertext : ciphertexts) {
+			size += Superstar.decrypt(ciphertext, key).length;
+		}
+		return size;
+	}
+
+	/**
+	 * Encrypts the corpus.
+	 *
+	 * @return int the number of bytes encrypted
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public int encrypt() throws GeneralSecurityException {
+		int size = 0;
+		for (byte[] plaintext : plaintexts) {
+			size += Superstar.encrypt(plaintext, key, compress).length;
+		}
+		return size;
+	}
+
+	/**
+	 * Derives the key, generates and encrypts the corpus, and prints the size it's
+	 * stored in with and without compression.
+	 *
+	 * @throws GeneralSecurityException
+	 */
+	@Setup
+	public void setUp() throws GeneralSecurityException {
+		key = Superstar.generateAESKey(SyntheticJournal.PASSWORD, Superstar.generateSalt());
+		Random random = new Random(ENTRIES);
+		plaintexts = new byte[ENTRIES][];
+		ciphertexts = new byte[ENTRIES][];
+		long size = 0;
+		for (int i = 0; i < ENTRIES; i++) {
+			plaintexts[i] = SyntheticJournal.entry(random).getBytes(StandardCharsets.UTF_8);
+			ciphertexts[i] = Superstar.encrypt(plaintexts[i], key, compress);
+			size += plaintexts[i].length;
+		}
+		long plain = stored(false);
+		long compressed = stored(true);
+		System.out.printf("%d entries of %d bytes stored in %d bytes, %d compressed (%.3f)%n", ENTRIES, size, plain,
+				compressed, (double) compressed / plain);
+	}
+
+	/**
+	 * Encrypts the corpus, returning the bytes it's stored in.
+	 *
+	 * @param compressed boolean true to compress the entries
+	 * @return long
+	 * @throws GeneralSecurityException
+	 */
+	private long stored(boolean compressed) throws GeneralSecurityException {
+		long stored = 0;
+		for (byte[] plaintext : plaintexts) {
+			stored += Superstar.encrypt(new String(plaintext, StandardCharsets.UTF_8), key, compressed).length();
+		}
+		return stored;
+	}
+}
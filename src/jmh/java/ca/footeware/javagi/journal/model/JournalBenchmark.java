@@ -0,0 +1,143 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opening and saving a journal, by number of entries and file format. Opening
+ * includes deriving the key. A save appends the changed entry to the log, as
+ * saving from the editor does; a full save writes the whole file, as when the
+ * log is folded back into it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class JournalBenchmark {
+
+	/**
+	 * A journal whose next save writes the whole file.
+	 */
+	@State(Scope.Thread)
+	public static class Rewrite {
+
+		private boolean compact;
+		private Journal journal;
+
+		/**
+		 * Opens the benchmark's journal.
+		 *
+		 * @param benchmark {@link JournalBenchmark}
+		 * @throws IOException
+		 * @throws JournalException
+		 */
+		@Setup(Level.Trial)
+		public void open(JournalBenchmark benchmark) throws IOException, JournalException {
+			compact = benchmark.compact;
+			journal = new Journal(benchmark.path.toFile(), SyntheticJournal.PASSWORD);
+			journal.setCompact(compact);
+		}
+
+		/**
+		 * Marks the journal to be written in full by its next save, by switching
+		 * its format away and back.
+		 */
+		@Setup(Level.Invocation)
+		public void mark() {
+			journal.setCompact(!compact);
+			journal.setCompact(compact);
+		}
+	}
+
+	@Param({ "false", "true" })
+	public boolean compact;
+
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	private Journal journal;
+	private Path path;
+	private Random random;
+
+	/**
+	 * Opens the journal.
+	 *
+	 * @return {@link Journal}
+	 * @throws IOException
+	 * @throws JournalException
+	 */
+	@Benchmark
+	public Journal open() throws IOException, JournalException {
+		return new Journal(path.toFile(), SyntheticJournal.PASSWORD);
+	}
+
+	/**
+	 * Changes an entry and saves it.
+	 *
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 * @throws JournalException
+	 */
+	@Benchmark
+	public void save() throws IOException, GeneralSecurityException, JournalException {
+		journal.addEntry(SyntheticJournal.START.plusDays(random.nextInt(entries)).toString(),
+				SyntheticJournal.entry(random));
+		journal.save();
+	}
+
+	/**
+	 * Saves the whole journal.
+	 *
+	 * @param rewrite {@link Rewrite}
+	 * @throws IOException
+	 * @throws JournalException
+	 */
+	@Benchmark
+	public void saveInFull(Rewrite rewrite) throws IOException, JournalException {
+		rewrite.journal.save();
+	}
+
+	/**
+	 * Generates the journal and opens it to be saved.
+	 *
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 * @throws JournalException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, GeneralSecurityException, JournalException {
+		path = SyntheticJournal.create(entries, compact);
+		journal = new Journal(path.toFile(), SyntheticJournal.PASSWORD);
+		journal.setCompact(compact);
+		random = new Random(entries);
+	}
+
+	/**
+	 * Deletes the journal.
+	 *
+	 * @throws IOException
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticJournal.delete(path);
+	}
+}
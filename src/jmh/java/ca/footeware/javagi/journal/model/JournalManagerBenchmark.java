@@ -0,0 +1,110 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The date lookups the calendar makes, by number of entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class JournalManagerBenchmark {
+
+	private static final int DATES = 1024;
+
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	private LocalDate[] dates;
+	private int next;
+	private Path path;
+
+	/**
+	 * Gets the dates of all entries.
+	 *
+	 * @return {@link List} of {@link LocalDate}
+	 */
+	@Benchmark
+	public List<LocalDate> getEntryDates() {
+		return JournalManager.getEntryDates();
+	}
+
+	/**
+	 * Gets the date of the entry after a date.
+	 *
+	 * @return {@link LocalDate}
+	 */
+	@Benchmark
+	public LocalDate getNextEntryDate() {
+		return JournalManager.getNextEntryDate(dates[next++ & (DATES - 1)]);
+	}
+
+	/**
+	 * Determines if there's an entry for a date.
+	 *
+	 * @return boolean
+	 */
+	@Benchmark
+	public boolean hasDate() {
+		return JournalManager.hasDate(dates[next++ & (DATES - 1)]);
+	}
+
+	/**
+	 * Generates and opens the journal, waiting for its search index to be built
+	 * so that doesn't run during the measurements, and picks dates to look up
+	 * across its range.
+	 *
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 * @throws JournalException
+	 * @throws InterruptedException
+	 * @throws ExecutionException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, GeneralSecurityException, JournalException, InterruptedException,
+			ExecutionException {
+		path = SyntheticJournal.create(entries, false);
+		JournalManager.openJournal(path.toString(), SyntheticJournal.PASSWORD);
+		JournalManager.search("").get();
+		Random random = new Random(entries);
+		int days = (int) (JournalManager.getLastEntryDate().toEpochDay() - SyntheticJournal.START.toEpochDay());
+		dates = new LocalDate[DATES];
+		for (int i = 0; i < DATES; i++) {
+			dates[i] = SyntheticJournal.START.plusDays(random.nextInt(days + 1));
+		}
+	}
+
+	/**
+	 * Deletes the journal.
+	 *
+	 * @throws IOException
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticJournal.delete(path);
+	}
+}
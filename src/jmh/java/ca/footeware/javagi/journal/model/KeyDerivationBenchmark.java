@@ -0,0 +1,84 @@
+package ca.footeware.javagi.journal.model;
+
+import java.security.GeneralSecurityException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading an entry as format 1 did, deriving a key from the password and the
+ * entry's own salt each time, and as format 2 does, with the journal key
+ * derived once per session. The derivation itself is timed on its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class KeyDerivationBenchmark {
+
+	private SecretKey key;
+	private String legacy;
+	private byte[] salt;
+	private String session;
+
+	/**
+	 * Derives a key from the password, once per session since format 2.
+	 *
+	 * @return {@link SecretKey}
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public SecretKey derive() throws GeneralSecurityException {
+		return Superstar.generateAESKey(SyntheticJournal.PASSWORD, salt);
+	}
+
+	/**
+	 * Decrypts a format 1 entry, deriving its key.
+	 *
+	 * @return {@link String}
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public String readPerEntryKey() throws GeneralSecurityException {
+		return Superstar.decrypt(legacy, SyntheticJournal.PASSWORD);
+	}
+
+	/**
+	 * Decrypts a format 2 entry with the journal key.
+	 *
+	 * @return {@link String}
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public String readSessionKey() throws GeneralSecurityException {
+		return Superstar.decrypt(session, key);
+	}
+
+	/**
+	 * Encrypts an entry of a typical length both ways.
+	 *
+	 * @throws GeneralSecurityException
+	 */
+	@Setup
+	public void setUp() throws GeneralSecurityException {
+		String entry = SyntheticJournal.entry(new Random(0));
+		salt = Superstar.generateSalt();
+		key = Superstar.generateAESKey(SyntheticJournal.PASSWORD, salt);
+		legacy = Superstar.encrypt(entry, SyntheticJournal.PASSWORD);
+		session = Superstar.encrypt(entry, key);
+	}
+}
@@ -0,0 +1,98 @@
+package ca.footeware.javagi.journal.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding the days of a month to mark in the calendar, scrolling month by month
+ * through a journal with an entry every day, by its length in years. The mask
+ * is looked up in the {@link DateIndex}; the walk checks every entry date, as
+ * marking did before the index kept masks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class MonthMarkingBenchmark {
+
+	@Param({ "1", "10", "40" })
+	public int years;
+
+	private DateIndex index;
+	private int month;
+
+	/**
+	 * Marks the days of the next month from its mask.
+	 *
+	 * @return int the sum of the marked days
+	 */
+	@Benchmark
+	public int mask() {
+		LocalDate date = next();
+		int marked = 0;
+		int days = index.getMonth(date.getYear(), date.getMonthValue());
+		for (int day = 1; days != 0; day++, days >>>= 1) {
+			if ((days & 1) != 0) {
+				marked += day;
+			}
+		}
+		return marked;
+	}
+
+	/**
+	 * Gets the first of the next month, wrapping around to the first month of the
+	 * journal.
+	 *
+	 * @return {@link LocalDate}
+	 */
+	private LocalDate next() {
+		LocalDate date = SyntheticJournal.START.plusMonths(month);
+		month = (month + 1) % (years * 12);
+		return date;
+	}
+
+	/**
+	 * Adds a day to the index for every day of the journal.
+	 */
+	@Setup
+	public void setUp() {
+		index = new DateIndex();
+		int first = (int) SyntheticJournal.START.toEpochDay();
+		int last = (int) SyntheticJournal.START.plusYears(years).toEpochDay();
+		for (int day = first; day < last; day++) {
+			index.add(day);
+		}
+	}
+
+	/**
+	 * Marks the days of the next month by checking every entry date.
+	 *
+	 * @return int the sum of the marked days
+	 */
+	@Benchmark
+	public int walk() {
+		LocalDate date = next();
+		int marked = 0;
+		for (int day : index.toArray()) {
+			LocalDate entryDate = LocalDate.ofEpochDay(day);
+			if (entryDate.getYear() == date.getYear() && entryDate.getMonth() == date.getMonth()) {
+				marked += entryDate.getDayOfMonth();
+			}
+		}
+		return marked;
+	}
+}
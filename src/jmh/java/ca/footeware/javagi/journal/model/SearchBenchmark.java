@@ -0,0 +1,101 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Searching a journal of about ten years of entries with its search index, and
+ * by decrypting and reading every entry as there was no other way to before.
+ * Queries cycle through single words, prefixes and several words.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 2)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+public class SearchBenchmark {
+
+	private static final String[] QUERIES = { "garden", "coff", "rain walk", "tomorrow night", "fin", "kids car dinner",
+			"zebra", "t" };
+
+	@Param({ "3650" })
+	public int entries;
+
+	private Journal journal;
+	private int next;
+	private Path path;
+
+	/**
+	 * Finds the entries matching the next query by reading every entry.
+	 *
+	 * @return {@link List} of the matching keys
+	 * @throws JournalException
+	 */
+	@Benchmark
+	public List<String> scan() throws JournalException {
+		Set<String> prefixes = SearchIndex.tokenize(QUERIES[next++ % QUERIES.length]);
+		List<String> matches = new ArrayList<>();
+		journal.readEntries((_, _) -> true, (key, _, decrypted) -> {
+			Set<String> words = SearchIndex.tokenize(new String(decrypted, StandardCharsets.UTF_8));
+			if (prefixes.stream().allMatch(prefix -> words.stream().anyMatch(word -> word.startsWith(prefix)))) {
+				matches.add(key);
+			}
+		});
+		return matches;
+	}
+
+	/**
+	 * Finds the entries matching the next query in the search index.
+	 *
+	 * @return int array of days
+	 */
+	@Benchmark
+	public int[] search() {
+		return journal.search(QUERIES[next++ % QUERIES.length]);
+	}
+
+	/**
+	 * Generates and opens the journal, and reads its search index.
+	 *
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 * @throws JournalException
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, GeneralSecurityException, JournalException {
+		path = SyntheticJournal.create(entries, false);
+		journal = new Journal(path.toFile(), SyntheticJournal.PASSWORD);
+		journal.search("");
+	}
+
+	/**
+	 * Deletes the journal.
+	 *
+	 * @throws IOException
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticJournal.delete(path);
+	}
+}
@@ -0,0 +1,75 @@
+package ca.footeware.javagi.journal.model;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encrypting and decrypting an entry with the journal key, by entry size in
+ * bytes, with and without compression.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Measurement(iterations = 5, time = 1)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+public class SuperstarBenchmark {
+
+	@Param({ "false", "true" })
+	public boolean compress;
+
+	@Param({ "100", "1000", "10000", "100000" })
+	public int size;
+
+	private byte[] ciphertext;
+	private SecretKey key;
+	private byte[] plaintext;
+
+	/**
+	 * Decrypts an entry.
+	 *
+	 * @return byte array
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public byte[] decrypt() throws GeneralSecurityException {
+		return Superstar.decrypt(ciphertext, key);
+	}
+
+	/**
+	 * Encrypts an entry.
+	 *
+	 * @return byte array
+	 * @throws GeneralSecurityException
+	 */
+	@Benchmark
+	public byte[] encrypt() throws GeneralSecurityException {
+		return Superstar.encrypt(plaintext, key, compress);
+	}
+
+	/**
+	 * Derives the key and encrypts the entry to be decrypted.
+	 *
+	 * @throws GeneralSecurityException
+	 */
+	@Setup
+	public void setUp() throws GeneralSecurityException {
+		key = Superstar.generateAESKey(SyntheticJournal.PASSWORD, Superstar.generateSalt());
+		plaintext = SyntheticJournal.text(size);
+		ciphertext = Superstar.encrypt(plaintext, key, compress);
+	}
+}
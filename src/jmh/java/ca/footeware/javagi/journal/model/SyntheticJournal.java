@@ -0,0 +1,120 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates journals of made-up entries for the benchmarks. Entries are
+ * sentences of common words, most a few hundred to a couple of thousand
+ * characters long, on most days from the start of 2000. The same arguments
+ * always generate the same entries.
+ */
+final class SyntheticJournal {
+
+	static final String PASSWORD = "benchmark";
+	static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+	private static final String[] WORDS = { "the", "the", "the", "and", "and", "a", "a", "to", "to", "of", "I", "I",
+			"I", "was", "it", "in", "that", "we", "went", "had", "with", "for", "on", "my", "day", "today", "morning",
+			"evening", "walk", "work", "home", "dinner", "coffee", "rain", "sun", "felt", "tired", "happy", "long",
+			"read", "wrote", "called", "friend", "garden", "kids", "car", "meeting", "weekend", "finally", "again",
+			"little", "after", "before", "because", "think", "maybe", "tomorrow", "night", "slept", "well", "late" };
+
+	/**
+	 * Writes a journal of the provided number of entries, dated on most days from
+	 * {@link #START}, in a temporary folder of its own.
+	 *
+	 * @param entries int
+	 * @param compact boolean true for the compact format
+	 * @return {@link Path} of the journal file
+	 * @throws IOException
+	 * @throws GeneralSecurityException
+	 * @throws JournalException
+	 */
+	static Path create(int entries, boolean compact) throws IOException, GeneralSecurityException, JournalException {
+		Path path = Files.createTempDirectory("journal-benchmark").resolve("journal.txt");
+		Files.createFile(path);
+		Journal journal = new Journal(path.toFile(), PASSWORD);
+		journal.setCompact(compact);
+		Random random = new Random(entries);
+		LocalDate date = START;
+		for (int i = 0; i < entries; i++) {
+			journal.addEntry(date.toString(), entry(random));
+			date = date.plusDays(random.nextInt(10) < 8 ? 1 : 2);
+		}
+		journal.save();
+		return path;
+	}
+
+	/**
+	 * Deletes a journal written by {@link #create(int, boolean)}, with the files
+	 * beside it.
+	 *
+	 * @param path {@link Path} of the journal file
+	 * @throws IOException
+	 */
+	static void delete(Path path) throws IOException {
+		try (Stream<Path> files = Files.walk(path.getParent())) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Generates an entry of a typical length.
+	 *
+	 * @param random {@link Random}
+	 * @return {@link String}
+	 */
+	static String entry(Random random) {
+		return text(random, 200 + (int) Math.abs(random.nextGaussian() * 1500));
+	}
+
+	/**
+	 * Generates text of at least the provided length.
+	 *
+	 * @param random {@link Random}
+	 * @param length int
+	 * @return {@link String}
+	 */
+	static String text(Random random, int length) {
+		StringBuilder text = new StringBuilder(length + 16);
+		while (text.length() < length) {
+			int words = 5 + random.nextInt(15);
+			for (int i = 0; i < words; i++) {
+				String word = WORDS[random.nextInt(WORDS.length)];
+				text.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+				text.append(i == words - 1 ? ". " : " ");
+			}
+			if (random.nextInt(5) == 0) {
+				text.append("\n\n");
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Generates text of exactly the provided number of UTF-8 bytes.
+	 *
+	 * @param size int
+	 * @return byte array
+	 */
+	static byte[] text(int size) {
+		return Arrays.copyOf(text(new Random(size), size).getBytes(StandardCharsets.UTF_8), size);
+	}
+
+	/**
+	 * Constructor, hidden because all methods are static.
+	 */
+	private SyntheticJournal() {
+	}
+}
@@ -0,0 +1,60 @@
+package ca.footeware.javagi.journal;
+
+import java.time.LocalDate;
+import java.util.function.Consumer;
+
+import org.gnome.gio.Settings;
+import org.gnome.glib.GLib;
+
+/**
+ * Saves the entry being edited once the user has stopped typing for a while.
+ * Every change restarts the wait, so a burst of typing results in one save.
+ * Runs on the GTK main loop.
+ */
+final class Autosaver {
+
+	private LocalDate date;
+	private Consumer<LocalDate> saver;
+	private Settings settings;
+	private int source;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param settings {@link Settings} with the autosave preferences
+	 * @param saver    {@link Consumer} told the date of the entry to save
+	 */
+	Autosaver(Settings settings, Consumer<LocalDate> saver) {
+		this.settings = settings;
+		this.saver = saver;
+	}
+
+	/**
+	 * Cancels a pending save, if any.
+	 */
+	void cancel() {
+		if (source != 0) {
+			GLib.sourceRemove(source);
+			source = 0;
+		}
+	}
+
+	/**
+	 * Called when the entry for the provided date has changed. Replaces any
+	 * pending save with one that runs after the configured idle period.
+	 *
+	 * @param date {@link LocalDate}
+	 */
+	void changed(LocalDate date) {
+		cancel();
+		if (!settings.getBoolean("autosave")) {
+			return;
+		}
+		this.date = date;
+		source = GLib.timeoutAddSeconds(GLib.PRIORITY_DEFAULT, settings.getInt("autosave-interval"), () -> {
+			source = 0;
+			saver.accept(this.date);
+			return GLib.SOURCE_REMOVE;
+		});
+	}
+}
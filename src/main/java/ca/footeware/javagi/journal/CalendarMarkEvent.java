@@ -0,0 +1,27 @@
+package ca.footeware.javagi.journal;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the marking of the days with entries on the
+ * calendar.
+ */
+@Name("ca.footeware.javagi.journal.CalendarMark")
+@Label("Calendar Marking")
+@Category({ "Journal", "UI" })
+@Description("The days with entries in the calendar's month are marked.")
+@StackTrace(false)
+public final class CalendarMarkEvent extends Event {
+
+	@Label("Days")
+	@Description("The number of days marked.")
+	int days;
+
+	@Label("Month")
+	String month;
+}
@@ -0,0 +1,248 @@
+package ca.footeware.javagi.journal;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.gnome.gtk.Box;
+import org.gnome.gtk.Label;
+
+import ca.footeware.javagi.journal.model.DecryptEvent;
+import ca.footeware.javagi.journal.model.EncryptEvent;
+import ca.footeware.javagi.journal.model.EntryCache;
+import ca.footeware.javagi.journal.model.JournalManager;
+import ca.footeware.javagi.journal.model.KeyDerivationEvent;
+import ca.footeware.javagi.journal.model.LoadEvent;
+import ca.footeware.javagi.journal.model.SaveEvent;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Fills the hidden diagnostics page with the journal's Flight Recorder events:
+ * a count of each kind and a histogram of the durations of the most recent
+ * ones. The events are only streamed once the page is first shown. Until then
+ * nothing records them, so, like any disabled JFR event, they cost next to
+ * nothing. They can also be recorded with the usual JFR tools, without the
+ * page.
+ */
+final class Diagnostics {
+
+	/**
+	 * The durations of the most recent events of a kind, and totals of them all.
+	 * Events are recorded on the stream's thread and formatted on the main loop.
+	 */
+	private static final class Latencies {
+
+		private long bytes;
+		private long count;
+		private long[] durations = new long[RECENT];
+		private Label label;
+		private String title;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param title {@link String}
+		 * @param label {@link Label} the statistics are shown in
+		 */
+		private Latencies(String title, Label label) {
+			this.title = title;
+			this.label = label;
+		}
+
+		/**
+		 * Formats the statistics, with a histogram of the recent durations.
+		 *
+		 * @return {@link String}
+		 */
+		private synchronized String format() {
+			StringBuilder text = new StringBuilder(title).append(": ").append(count)
+					.append(count == 1 ? " event" : " events");
+			if (bytes > 0) {
+				text.append(", ").append(formatBytes(bytes));
+			}
+			if (count == 0) {
+				return text.toString();
+			}
+			long[] recent = Arrays.copyOf(durations, (int) Math.min(count, RECENT));
+			Arrays.sort(recent);
+			text.append("\nlast ").append(recent.length).append(": p50 ").append(formatNanos(percentile(recent, 50)))
+					.append(", p95 ").append(formatNanos(percentile(recent, 95))).append(", max ")
+					.append(formatNanos(recent[recent.length - 1]));
+			int[] buckets = new int[BUCKETS.length];
+			int most = 0;
+			for (long duration : recent) {
+				int bucket = 0;
+				while (bucket < BOUNDS.length && duration >= BOUNDS[bucket]) {
+					bucket++;
+				}
+				most = Math.max(most, ++buckets[bucket]);
+			}
+			for (int i = 0; i < BUCKETS.length; i++) {
+				text.append('\n').append(BUCKETS[i]).append(" │")
+						.append("█".repeat((int) Math.ceil((double) BAR * buckets[i] / most))).append(' ')
+						.append(buckets[i]);
+			}
+			return text.toString();
+		}
+
+		/**
+		 * Records an event.
+		 *
+		 * @param event {@link RecordedEvent}
+		 */
+		private synchronized void record(RecordedEvent event) {
+			durations[(int) (count++ % RECENT)] = event.getDuration().toNanos();
+			if (event.hasField("size")) {
+				bytes += event.getLong("size");
+			}
+		}
+	}
+
+	private static final int BAR = 30;
+	private static final long[] BOUNDS = { 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000 };
+	private static final String[] BUCKETS = { " < 10 µs", "< 100 µs", "  < 1 ms", " < 10 ms", "< 100 ms", "   < 1 s",
+			"   ≥ 1 s" };
+	private static final int RECENT = 1000;
+
+	/**
+	 * Formats a number of bytes in the largest unit it's at least one of.
+	 *
+	 * @param bytes long
+	 * @return {@link String}
+	 */
+	private static String formatBytes(long bytes) {
+		if (bytes < 1024) {
+			return bytes + " B";
+		}
+		if (bytes < 1024 * 1024) {
+			return String.format("%.1f KB", bytes / 1024.0);
+		}
+		return String.format("%.1f MB", bytes / (1024.0 * 1024));
+	}
+
+	/**
+	 * Formats a duration in milliseconds.
+	 *
+	 * @param nanos long
+	 * @return {@link String}
+	 */
+	private static String formatNanos(long nanos) {
+		return String.format("%.2f ms", nanos / 1e6);
+	}
+
+	/**
+	 * Gets a percentile of the provided durations.
+	 *
+	 * @param sorted     long array, ascending
+	 * @param percentile int
+	 * @return long
+	 */
+	private static long percentile(long[] sorted, int percentile) {
+		return sorted[Math.max(0, (int) Math.ceil(sorted.length * percentile / 100.0) - 1)];
+	}
+
+	private Box box;
+	private Label counters;
+	private Map<Class<? extends Event>, Latencies> latencies;
+	private LocalTime since;
+	private RecordingStream stream;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param box {@link Box} of the diagnostics page to fill
+	 */
+	Diagnostics(Box box) {
+		this.box = box;
+	}
+
+	/**
+	 * Adds a label for some statistics to the page.
+	 *
+	 * @return {@link Label}
+	 */
+	private Label addLabel() {
+		Label label = new Label("");
+		label.addCssClass("monospace");
+		label.setSelectable(true);
+		label.setXalign(0);
+		box.append(label);
+		return label;
+	}
+
+	/**
+	 * Determines if the events are being streamed.
+	 *
+	 * @return boolean
+	 */
+	boolean isStarted() {
+		return stream != null;
+	}
+
+	/**
+	 * Shows the latest statistics, if the page is showing. Must be called on the
+	 * main loop.
+	 */
+	void refresh() {
+		if (stream == null || !box.getMapped()) {
+			return;
+		}
+		for (Latencies kind : latencies.values()) {
+			kind.label.setText(kind.format());
+		}
+		StringBuilder text = new StringBuilder("Recording since ").append(since);
+		EntryCache cache = JournalManager.getEntryCache();
+		if (cache != null) {
+			text.append("\nEntry cache: ").append(cache.getSize()).append(" entries, ")
+					.append(formatBytes(cache.getBytes())).append(" of ").append(formatBytes(cache.getBudget()))
+					.append("\n").append(cache.getHits()).append(" hits, ").append(cache.getMisses()).append(" misses");
+		}
+		counters.setText(text.toString());
+	}
+
+	/**
+	 * Starts streaming the events, refreshing the page as each batch of them
+	 * arrives. Must be called on the main loop.
+	 */
+	void start() {
+		if (stream != null) {
+			return;
+		}
+		counters = addLabel();
+		latencies = new LinkedHashMap<>();
+		latencies.put(KeyDerivationEvent.class, new Latencies("Key derivation", addLabel()));
+		latencies.put(LoadEvent.class, new Latencies("Journal load", addLabel()));
+		latencies.put(SaveEvent.class, new Latencies("Journal save", addLabel()));
+		latencies.put(DecryptEvent.class, new Latencies("Decrypt", addLabel()));
+		latencies.put(EncryptEvent.class, new Latencies("Encrypt", addLabel()));
+		latencies.put(CalendarMarkEvent.class, new Latencies("Calendar marking", addLabel()));
+		since = LocalTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+		stream = new RecordingStream();
+		// the events are counted as they arrive, so none need be kept for long
+		stream.setMaxAge(Duration.ofMinutes(1));
+		latencies.forEach((type, kind) -> {
+			stream.enable(type).withoutThreshold();
+			stream.onEvent(EventType.getEventType(type).getName(), kind::record);
+		});
+		stream.onFlush(() -> Dispatcher.post(this::refresh));
+		stream.startAsync();
+		refresh();
+	}
+
+	/**
+	 * Stops streaming the events, if started.
+	 */
+	void stop() {
+		if (stream != null) {
+			stream.close();
+			stream = null;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package ca.footeware.javagi.journal;
+
+import org.gnome.glib.GLib;
+
+/**
+ * Runs code on the GTK main loop. Gtk widgets may only be touched from there,
+ * so background work posts its widget updates through here.
+ */
+final class Dispatcher {
+
+	/**
+	 * Runs the provided code on the main loop once it's idle. Code posted from
+	 * one thread runs in the order it was posted.
+	 *
+	 * @param runnable {@link Runnable}
+	 */
+	static void post(Runnable runnable) {
+		GLib.idleAdd(GLib.PRIORITY_DEFAULT_IDLE, () -> {
+			runnable.run();
+			return GLib.SOURCE_REMOVE;
+		});
+	}
+
+	/**
+	 * Constructor, hidden because all methods are static.
+	 */
+	private Dispatcher() {
+	}
+}
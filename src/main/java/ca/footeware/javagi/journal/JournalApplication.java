@@ -2,6 +2,7 @@ package ca.footeware.javagi.journal;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.util.Objects;
 import java.util.Properties;
 
@@ -20,12 +21,20 @@ import org.javagi.base.GErrorException;
 import org.javagi.gobject.annotations.InstanceInit;
 import org.javagi.gobject.annotations.RegisteredType;
 
+import ca.footeware.javagi.journal.model.JournalManager;
+
 /**
  * The window-controlling application.
+ * <p>
+ * Run with the system property {@value #MEASURE_STARTUP} set to true, it prints
+ * how long after the JVM started the window's first frame was drawn, then
+ * quits. The AOT cache is trained and cold starts measured that way.
  */
 @RegisteredType(name = "JournalApplication")
 public class JournalApplication extends Application {
 
+	private static final String MEASURE_STARTUP = "journal.measure-startup";
+
 	/**
 	 * Application entry point.
 	 *
@@ -37,34 +46,31 @@ public class JournalApplication extends Application {
 	}
 
 	private GtkBuilder builder;
+	private Window helpOverlay;
+	private boolean reported;
+	private String version;
 
 	/**
 	 * Constructor.
 	 */
 	public JournalApplication() {
 		setApplicationId("ca.footeware.javagi.journal");
-		setFlags(ApplicationFlags.DEFAULT_FLAGS);
+		// measured runs mustn't hand over to a running instance
+		setFlags(Boolean.getBoolean(MEASURE_STARTUP) ? ApplicationFlags.NON_UNIQUE : ApplicationFlags.DEFAULT_FLAGS);
 	}
 
 	@Override
 	public void activate() {
-		var display = Display.getDefault();
-		var iconTheme = IconTheme.getForDisplay(display);
-		iconTheme.addResourcePath("/journal");
-
-		try {
-			byte[] bytes = JournalApplication.class.getResourceAsStream("/journal.gresource").readAllBytes();
-			var resources = Resource.fromData(bytes);
-			resources.resourcesRegister();
-		} catch (IOException | GErrorException e) {
-			e.printStackTrace();
-		}
-
 		Window win = this.getActiveWindow();
 		if (win == null) {
 			win = new JournalWindow(this);
 		}
 		win.present();
+		if (Boolean.getBoolean(MEASURE_STARTUP)) {
+			// presenting realized the window, so it has a frame clock; its after-paint
+			// signal fires once the first frame has been drawn
+			win.getFrameClock().onAfterPaint(this::reportStartup);
+		}
 	}
 
 	@Override
@@ -79,6 +85,26 @@ public class JournalApplication extends Application {
 		return Objects.equals(builder, other.builder);
 	}
 
+	/**
+	 * Gets the application's version, reading it the first time.
+	 *
+	 * @return {@link String}
+	 */
+	private String getVersion() {
+		if (version == null) {
+			version = "unknown";
+			Properties properties = new Properties();
+			try (InputStream stream = this.getClass().getResourceAsStream("/project.properties")) {
+				properties.load(stream);
+				version = properties.getProperty("version", version);
+			} catch (IOException e) {
+				e.printStackTrace();
+				// ignore and use initial value
+			}
+		}
+		return version;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -102,28 +128,16 @@ public class JournalApplication extends Application {
 		quitAction.onActivate(this::onQuitAction);
 		setAccelsForAction("app.quit", new String[] { "<ctrl>q" });
 		addAction(quitAction);
-
-		builder = new GtkBuilder();
 	}
 
 	// @formatter:off
 	private void onAboutAction(Variant parameter) {
-		String version = "unknown";
-		Properties properties = new Properties();
-		try {
-			InputStream stream = this.getClass().getResourceAsStream("/project.properties");
-			properties.load(stream);
-			version = (String) properties.get("version");
-		} catch (IOException e) {
-			e.printStackTrace();
-			// ignore and use initial value
-		}
         var about = AboutDialog.builder()
             .setApplicationName("Journal")
             .setApplicationIcon("journal")
             .setDeveloperName("Another fine mess by Footeware.ca")
             .setDevelopers(new String[]{"Craig Foote"})
-            .setVersion(version)
+            .setVersion(getVersion())
             .setWebsite("https://github.com/CraigFoote/ca.footeware.javagi.journal")
             .setIssueUrl("https://github.com/CraigFoote/ca.footeware.javagi.journal/issues")
             .setCopyright("©2025 Craig Foote")
@@ -141,15 +155,62 @@ public class JournalApplication extends Application {
 	}
 
 	/**
-	 * Respond to the Shortcuts menu item.
+	 * Respond to the Shortcuts menu item. The overlay is built the first time it's
+	 * shown and hidden rather than destroyed when closed.
 	 */
 	private void onShortcutsAction(Variant parameter) {
-		try {
-			builder.addFromResource("/journal/help_overlay.ui");
-			if (builder.getObject("help_overlay") instanceof Window window) {
-				window.setVisible(true);
+		if (helpOverlay == null) {
+			try {
+				builder = new GtkBuilder();
+				builder.addFromResource("/journal/help_overlay.ui");
+				if (builder.getObject("help_overlay") instanceof Window window) {
+					window.setHideOnClose(true);
+					helpOverlay = window;
+				}
+			} catch (GErrorException e) {
+				e.printStackTrace();
+				return;
 			}
-		} catch (GErrorException e) {
+		}
+		if (helpOverlay != null) {
+			helpOverlay.setVisible(true);
+		}
+	}
+
+	/**
+	 * Prints how long after the JVM started the window's first frame was drawn,
+	 * and quits. Frames drawn before the application exits are ignored.
+	 */
+	private void reportStartup() {
+		if (reported) {
+			return;
+		}
+		reported = true;
+		long now = System.currentTimeMillis();
+		System.out.println("Started in " + (now - ManagementFactory.getRuntimeMXBean().getStartTime()) + " ms");
+		quit();
+	}
+
+	/**
+	 * Waits for saves still being written before the application exits.
+	 */
+	@Override
+	public void shutdown() {
+		JournalManager.close();
+		super.shutdown();
+	}
+
+	/**
+	 * Registers the application's resources and icons, once, before the first
+	 * activation.
+	 */
+	@Override
+	public void startup() {
+		super.startup();
+		IconTheme.getForDisplay(Display.getDefault()).addResourcePath("/journal");
+		try (InputStream stream = JournalApplication.class.getResourceAsStream("/journal.gresource")) {
+			Resource.fromData(stream.readAllBytes()).resourcesRegister();
+		} catch (IOException | GErrorException e) {
 			e.printStackTrace();
 		}
 	}
@@ -2,9 +2,12 @@ package ca.footeware.javagi.journal;
 
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.gnome.adw.AlertDialog;
 import org.gnome.adw.Animation;
@@ -28,13 +31,22 @@ import org.gnome.gio.Settings;
 import org.gnome.gio.SimpleAction;
 import org.gnome.glib.DateTime;
 import org.gnome.glib.TimeZone;
+import org.gnome.gtk.Box;
 import org.gnome.gtk.Button;
 import org.gnome.gtk.Calendar;
 import org.gnome.gtk.CssProvider;
 import org.gnome.gtk.FileDialog;
 import org.gnome.gtk.Gtk;
 import org.gnome.gtk.Image;
+import org.gnome.gtk.Label;
+import org.gnome.gtk.ListBox;
+import org.gnome.gtk.ListBoxRow;
+import org.gnome.gtk.PolicyType;
 import org.gnome.gtk.ProgressBar;
+import org.gnome.gtk.ScrolledWindow;
+import org.gnome.gtk.SearchBar;
+import org.gnome.gtk.SearchEntry;
+import org.gnome.gtk.SelectionMode;
 import org.gnome.gtk.TextBuffer;
 import org.gnome.gtk.TextBufferCommitNotify;
 import org.gnome.gtk.TextBufferNotifyFlags;
@@ -68,6 +80,7 @@ public class JournalWindow extends ApplicationWindow {
 			int width = JournalWindow.this.getWidth();
 			int height = JournalWindow.this.getHeight();
 			if (isDirty()) {
+				autosaver.cancel();
 				AlertDialog alert = new AlertDialog("Unsaved Changes",
 						"Do you want to save your edits to " + previousDate + "?");
 				alert.addResponse(DISCARD, "Discard");
@@ -83,7 +96,7 @@ public class JournalWindow extends ApplicationWindow {
 					switch (button) {
 					case "save": {
 						// save previous date's text & close window
-						save(convert(calendar.getDate()), getText());
+						save(convert(calendar.getDate()), getText(), true);
 						saveWidthHeight(width, height);
 						break;
 					}
@@ -106,6 +119,7 @@ public class JournalWindow extends ApplicationWindow {
 				return true; // keep window open until user decides
 			}
 			saveWidthHeight(width, height);
+			diagnostics.stop();
 			return false; // go ahead and close window
 		}
 
@@ -121,58 +135,34 @@ public class JournalWindow extends ApplicationWindow {
 		}
 	}
 
-	/**
-	 * Add provided text as a journal entry for provided date, save journal entries
-	 * to disk, update title, all while notifying user via a progress bar.
-	 */
-	private class SaveRunnable implements Runnable {
-
-		private LocalDate date;
-		private String text;
-
-		/**
-		 * Constructor.
-		 *
-		 * @param date {@link LocalDate}
-		 * @param text {@link String}
-		 */
-		public SaveRunnable(LocalDate date, String text) {
-			this.date = date;
-			this.text = text;
-		}
-
-		@Override
-		public void run() {
-			try {
-				progressBar.setFraction(0.0);
-				JournalManager.addEntry(date, text);
-				progressBar.setFraction(0.2);
-				JournalManager.saveJournal();
-				progressBar.setFraction(0.6);
-				setDirtyTitle(false);
-				progressBar.setFraction(0.8);
-				notifyUser("Journal was saved.");
-				progressBar.setFraction(1.0);
-			} catch (JournalException e) {
-				notifyUser(e.getMessage());
-			} finally {
-				progressBar.setFraction(0.0);
-			}
-		}
-	}
-
 	private static final String CANCEL = "cancel";
+	private static final String CHANGE = "change";
+	private static final String CLOSE = "close";
+	private static final String DIAGNOSTICS_PAGE = "diagnostics-page";
 	private static final String DISCARD = "discard";
+	private static final String[] EDITOR_ACTIONS = { "change_password", "first", "last", "next", "previous",
+			"save_journal", "search", "today" };
 	private static final String EDITOR_PAGE = "editor-page";
+	private static final String LOADING = "Loading…";
+	private static final int MAX_RESULTS = 100;
 
 	private static final String SAVE = "save";
 
+	private Autosaver autosaver;
+
 	@GtkChild(name = "back_button")
 	public Button backButton;
 
 	@GtkChild(name = "calendar")
 	public Calendar calendar;
 
+	private Diagnostics diagnostics;
+
+	@GtkChild(name = "diagnostics_box")
+	public Box diagnosticsBox;
+
+	private int edits;
+
 	@GtkChild(name = "existing_journal_key")
 	public Image existingJournalKey;
 
@@ -184,6 +174,8 @@ public class JournalWindow extends ApplicationWindow {
 
 	private File file = null;
 
+	private CompletableFuture<Optional<String>> loading = null;
+
 	@GtkChild(name = "new_journal_key")
 	public Image newJournalKey;
 
@@ -196,13 +188,32 @@ public class JournalWindow extends ApplicationWindow {
 	@GtkChild(name = "new_journal_password_2")
 	public PasswordEntryRow newJournalPassword2;
 
+	private CompletableFuture<Void> opening = null;
+
 	private LocalDate previousDate = null;
 
-	private String previousText = null;
+	private String previousPage = null;
 
 	@GtkChild(name = "progress_bar")
 	public ProgressBar progressBar;
 
+	private LocalDate savedDate = null;
+
+	private String savedText = null;
+
+	@GtkChild(name = "search_bar")
+	public SearchBar searchBar;
+
+	private List<LocalDate> searchDates = List.of();
+
+	@GtkChild(name = "search_entry")
+	public SearchEntry searchEntry;
+
+	@GtkChild(name = "search_results")
+	public ListBox searchResults;
+
+	private int searches;
+
 	private Settings settings;
 
 	@GtkChild(name = "stack")
@@ -225,6 +236,8 @@ public class JournalWindow extends ApplicationWindow {
 	public JournalWindow(Application application) {
 		setApplication(application);
 		application.setAccelsForAction("win.save_journal", new String[] { "<ctrl>s" });
+		application.setAccelsForAction("win.search", new String[] { "<ctrl>f" });
+		application.setAccelsForAction("win.diagnostics", new String[] { "<ctrl><shift>d" });
 		present();
 	}
 
@@ -238,6 +251,52 @@ public class JournalWindow extends ApplicationWindow {
 		calendar.onPrevYear(this::onDateSelected);
 	}
 
+	/**
+	 * Saves the editor's text as the entry for the provided date, without
+	 * notifying the user, if it has changed since it was last loaded or saved.
+	 *
+	 * @param date {@link LocalDate}
+	 */
+	private void autosave(LocalDate date) {
+		if (!isDirty()) {
+			return;
+		}
+		String text = getText();
+		if (date.equals(savedDate) && text.equals(savedText)) {
+			// edits were undone
+			setDirtyTitle(false);
+			return;
+		}
+		save(date, text, false);
+	}
+
+	/**
+	 * Changes the journal's password in the background, showing progress in the
+	 * progress bar, then notifies the user.
+	 *
+	 * @param currentPassword {@link String}
+	 * @param password1       {@link String} the new password
+	 * @param password2       {@link String} the new password again
+	 */
+	private void changePassword(String currentPassword, String password1, String password2) {
+		if (password1.isEmpty() || password2.isEmpty()) {
+			notifyUser("Error: password fields cannot be empty.");
+			return;
+		}
+		if (!password1.equals(password2)) {
+			notifyUser("Error: password fields must match.");
+			return;
+		}
+		progressBar.setFraction(0.0);
+		JournalManager
+				.changePassword(currentPassword, password1,
+						fraction -> Dispatcher.post(() -> progressBar.setFraction(fraction)))
+				.whenComplete((_, throwable) -> Dispatcher.post(() -> {
+					notifyUser(throwable == null ? "Password was changed." : throwable.getMessage());
+					progressBar.setFraction(0.0);
+				}));
+	}
+
 	/**
 	 * Convert the provided {@link DateTime} to a {@link LocalDate}.
 	 *
@@ -300,6 +359,16 @@ public class JournalWindow extends ApplicationWindow {
 		var saveAction = new SimpleAction("save_journal", null);
 		saveAction.onActivate(_ -> onSaveAction());
 		super.addAction(saveAction);
+
+		// Change Password action
+		var changePasswordAction = new SimpleAction("change_password", null);
+		changePasswordAction.onActivate(_ -> onChangePasswordAction());
+		super.addAction(changePasswordAction);
+
+		// Search action
+		var searchAction = new SimpleAction("search", null);
+		searchAction.onActivate(_ -> onSearchAction());
+		super.addAction(searchAction);
 	}
 
 	/**
@@ -361,10 +430,18 @@ public class JournalWindow extends ApplicationWindow {
 			stack.setVisibleChildName("open-page");
 		});
 		super.addAction(openPageAction);
+
+		// Diagnostics action, a hidden page
+		var diagnosticsAction = new SimpleAction("diagnostics", null);
+		diagnosticsAction.onActivate(_ -> onDiagnosticsAction());
+		super.addAction(diagnosticsAction);
 	}
 
 	/**
-	 * Display the entry for the provided date in the editor.
+	 * Display the entry for the provided date in the editor. Entries that have to
+	 * be decrypted are decrypted in the background, with the editor showing a
+	 * read-only placeholder meanwhile. Once displayed, the entries around it are
+	 * prefetched.
 	 *
 	 * @param date {@link LocalDate}
 	 */
@@ -372,18 +449,20 @@ public class JournalWindow extends ApplicationWindow {
 		if (isDirty()) {
 			promptToSavePrevious(date);
 		} else {
-			TextBuffer buffer = textView.getBuffer();
-			if (JournalManager.hasDate(date)) {
-				try {
-					String entry = JournalManager.getEntry(date);
-					buffer.setText(entry, entry.length());
-				} catch (JournalException e) {
-					notifyUser(e.getMessage());
-				}
+			autosaver.cancel();
+			// don't let decrypting ahead delay this date
+			JournalManager.cancelPrefetch();
+			CompletableFuture<Optional<String>> future = JournalManager.findEntryAsync(date);
+			loading = future;
+			if (future.isDone()) {
+				future.whenComplete((entry, throwable) -> onEntryLoaded(future, date, entry, throwable));
 			} else {
-				buffer.setText("", 0);
+				textView.setEditable(false);
+				textView.getBuffer().setText(LOADING, LOADING.length());
+				setDirtyTitle(false);
+				future.whenComplete(
+						(entry, throwable) -> Dispatcher.post(() -> onEntryLoaded(future, date, entry, throwable)));
 			}
-			setDirtyTitle(false);
 		}
 	}
 
@@ -462,6 +541,13 @@ public class JournalWindow extends ApplicationWindow {
 		int width = settings.getInt("window-width");
 		int height = settings.getInt("window-height");
 		this.setDefaultSize(width, height);
+		JournalManager.setBackups(settings.getInt("backups"));
+		JournalManager.setCacheBudget(settings.getInt("entry-cache-size") * 1024L);
+		JournalManager.setCompact(settings.getBoolean("compact"));
+		JournalManager.setCompress(settings.getBoolean("compress"));
+		JournalManager.setSharded(settings.getBoolean("sharded"));
+		autosaver = new Autosaver(settings, this::autosave);
+		diagnostics = new Diagnostics(diagnosticsBox);
 
 		// css
 		CssProvider cssProvider = new CssProvider();
@@ -486,6 +572,11 @@ public class JournalWindow extends ApplicationWindow {
 			}
 		});
 
+		// configure search
+		searchBar.connectEntry(searchEntry);
+		searchEntry.onSearchChanged(this::onSearchChanged);
+		searchResults.onRowActivated(this::onSearchResultActivated);
+
 		this.onCloseRequest(new CloseRequestHandler());
 	}
 
@@ -504,14 +595,21 @@ public class JournalWindow extends ApplicationWindow {
 	 * Mark all days in current month that have entries in the journal.
 	 */
 	private void markEntryDays() {
+		CalendarMarkEvent event = new CalendarMarkEvent();
+		event.begin();
 		calendar.clearMarks();
-		List<LocalDate> entryDates = JournalManager.getEntryDates();
 		LocalDate date = convert(calendar.getDate());
-		for (LocalDate localDate : entryDates) {
-			if (localDate.getYear() == date.getYear() && localDate.getMonth() == date.getMonth()) {
-				calendar.markDay(localDate.getDayOfMonth());
+		int days = JournalManager.getEntryDays(date.getYear(), date.getMonthValue());
+		for (int day = 1, remaining = days; remaining != 0; day++, remaining >>>= 1) {
+			if ((remaining & 1) != 0) {
+				calendar.markDay(day);
 			}
 		}
+		if (event.shouldCommit()) {
+			event.month = YearMonth.from(date).toString();
+			event.days = Integer.bitCount(days);
+			event.commit();
+		}
 	}
 
 	/**
@@ -527,8 +625,76 @@ public class JournalWindow extends ApplicationWindow {
 	 * Called when a change is made in the text editor.
 	 */
 	private void onBufferChanged() {
+		if (loading != null) {
+			// the entry being displayed, not an edit
+			return;
+		}
+		edits++;
 		setDirtyTitle(true);
-		previousText = getText();
+		autosaver.changed(convert(calendar.getDate()));
+	}
+
+	/**
+	 * Called once a save has completed, successfully or not. The editor is only
+	 * marked clean if it hasn't changed since the save was queued.
+	 *
+	 * @param date      {@link LocalDate} of the saved entry
+	 * @param text      {@link String} the saved text
+	 * @param edit      int the edit count when the save was queued
+	 * @param notify    boolean true to tell the user the save succeeded
+	 * @param throwable {@link Throwable} null if the save succeeded
+	 */
+	private void onSaved(LocalDate date, String text, int edit, boolean notify, Throwable throwable) {
+		if (throwable == null) {
+			savedDate = date;
+			savedText = text;
+			if (edit == edits) {
+				setDirtyTitle(false);
+			}
+			if (notify) {
+				notifyUser("Journal was saved.");
+			}
+		} else {
+			notifyUser(throwable.getMessage());
+		}
+		progressBar.setFraction(0.0);
+	}
+
+	/**
+	 * Change Password menu handler. Prompts for the current password and the new
+	 * one, twice.
+	 */
+	private void onChangePasswordAction() {
+		if (!EDITOR_PAGE.equals(stack.getVisibleChildName())) {
+			return;
+		}
+		PasswordEntryRow currentPassword = new PasswordEntryRow();
+		currentPassword.setTitle("Current Password");
+		PasswordEntryRow password1 = new PasswordEntryRow();
+		password1.setTitle("New Password");
+		PasswordEntryRow password2 = new PasswordEntryRow();
+		password2.setTitle("Confirm New Password");
+		ListBox rows = new ListBox();
+		rows.setSelectionMode(SelectionMode.NONE);
+		rows.addCssClass("boxed-list");
+		rows.append(currentPassword);
+		rows.append(password1);
+		rows.append(password2);
+
+		AlertDialog alert = new AlertDialog("Change Password",
+				"Every entry will be encrypted again with the new password. Backups of the journal, which "
+						+ "would still open with the current password, will be deleted.");
+		alert.setExtraChild(rows);
+		alert.addResponse(CANCEL, "Cancel");
+		alert.addResponse(CHANGE, "Change");
+		alert.setCloseResponse(CANCEL);
+		alert.setResponseAppearance(CHANGE, ResponseAppearance.SUGGESTED);
+		alert.setDefaultResponse(CHANGE);
+		alert.choose(this, null, (_, result, _) -> {
+			if (CHANGE.equals(alert.chooseFinish(result))) {
+				changePassword(currentPassword.getText(), password1.getText(), password2.getText());
+			}
+		});
 	}
 
 	/**
@@ -574,6 +740,56 @@ public class JournalWindow extends ApplicationWindow {
 		textView.getBuffer().setModified(false);
 	}
 
+	/**
+	 * Shows the hidden diagnostics page, or returns from it to the page it was
+	 * shown from. The timings it shows are recorded from the first time it's shown.
+	 */
+	private void onDiagnosticsAction() {
+		if (DIAGNOSTICS_PAGE.equals(stack.getVisibleChildName())) {
+			stack.setVisibleChildName(previousPage);
+		} else {
+			previousPage = stack.getVisibleChildName();
+			stack.setVisibleChildName(DIAGNOSTICS_PAGE);
+			diagnostics.start();
+			diagnostics.refresh();
+		}
+	}
+
+	/**
+	 * Called once the entry for a date has been loaded, successfully or not. The
+	 * result is ignored if another date has been displayed since. If the entry
+	 * couldn't be decrypted the editor is left empty and read-only, so it isn't
+	 * overwritten.
+	 *
+	 * @param future    {@link CompletableFuture} the load
+	 * @param date      {@link LocalDate}
+	 * @param entry     {@link Optional} of the entry's text, empty if there's no
+	 *                  entry
+	 * @param throwable {@link Throwable} null if the load succeeded
+	 */
+	private void onEntryLoaded(CompletableFuture<Optional<String>> future, LocalDate date, Optional<String> entry,
+			Throwable throwable) {
+		if (future != loading) {
+			return;
+		}
+		TextBuffer buffer = textView.getBuffer();
+		if (throwable == null) {
+			String text = entry.orElse("");
+			buffer.setText(text, text.length());
+			savedDate = date;
+			savedText = text;
+			textView.setEditable(true);
+			JournalManager.prefetch(date);
+		} else {
+			buffer.setText("", 0);
+			textView.setEditable(false);
+			notifyUser(throwable.getMessage());
+		}
+		loading = null;
+		setDirtyTitle(false);
+		buffer.setModified(false);
+	}
+
 	/**
 	 * Prompts the user to browse local file system to choose the name and location
 	 * of an existing journal file.
@@ -642,10 +858,15 @@ public class JournalWindow extends ApplicationWindow {
 	}
 
 	/**
-	 * Called when a journal is first opened. Shows the Editor page, hides the Back
-	 * button, draws calendar and selects today's date.
+	 * Called when a journal is to be opened. It's opened in the background. As
+	 * soon as the password is known to be correct, usually before the whole file
+	 * has been read, the Editor page is shown with today's entry, read-only. The
+	 * rest of the journal loads meanwhile, its progress in the progress bar.
 	 */
 	private void onOpenJournalAction() {
+		if (opening != null && !opening.isDone()) {
+			return;
+		}
 		String password = existingJournalPassword.getText();
 		try {
 			if (file == null) {
@@ -656,25 +877,78 @@ public class JournalWindow extends ApplicationWindow {
 				throw new JournalException("Error: journal filename was null.");
 			}
 
-			JournalManager.openJournal(file, password);
-			JournalManager.saveJournal(); // if overwriting an existing file
-			fadeWidget(existingJournalKey, new DoneCallback() {
-				@Override
-				public void run() {
-					stack.setVisibleChildName(EDITOR_PAGE);
-					backButton.setVisible(false);
-					calendar.setDate(DateTime.nowLocal());
-					displayDateEntry(LocalDate.now());
-					markEntryDays();
-					windowTitle.setSubtitle(path.toString());
-					textView.grabFocus();
-				}
-			});
+			LocalDate today = LocalDate.now();
+			progressBar.setFraction(0.0);
+			CompletableFuture<Void> future = JournalManager.openJournalAsync(file, password, today,
+					entry -> Dispatcher.post(() -> onUnlocked(path.toString(), entry)),
+					fraction -> Dispatcher.post(() -> progressBar.setFraction(fraction)));
+			opening = future;
+			future.whenComplete((_, throwable) -> Dispatcher.post(() -> onOpened(today, throwable)));
 		} catch (JournalException e) {
 			notifyUser(e.getMessage());
 		}
 	}
 
+	/**
+	 * Called once a journal has been opened, successfully or not. If it was, the
+	 * calendar and editing are enabled and the calendar selects today's date.
+	 * Otherwise the Open page is shown again.
+	 *
+	 * @param today     {@link LocalDate} whose entry was read first
+	 * @param throwable {@link Throwable} null if the journal was opened
+	 */
+	private void onOpened(LocalDate today, Throwable throwable) {
+		progressBar.setFraction(0.0);
+		if (throwable != null) {
+			if (loading != null) {
+				// unlocked but couldn't be loaded
+				loading = null;
+				textView.getBuffer().setText("", 0);
+				setEditorEnabled(true);
+				existingJournalKey.setOpacity(1);
+				stack.setVisibleChildName("open-page");
+				backButton.setVisible(true);
+			}
+			notifyUser(throwable.getMessage());
+			return;
+		}
+		setEditorEnabled(true);
+		calendar.setDate(convert(today));
+		// cached when it was read first
+		displayDateEntry(today);
+		markEntryDays();
+		textView.grabFocus();
+		verifyJournal();
+	}
+
+	/**
+	 * Called once the password of the journal being opened is known to be correct.
+	 * Shows the Editor page with the provided entry, read-only until the rest of
+	 * the journal has loaded.
+	 *
+	 * @param path  {@link String} of the journal file
+	 * @param entry {@link Optional} of today's entry, empty if there's none
+	 */
+	private void onUnlocked(String path, Optional<String> entry) {
+		setEditorEnabled(false);
+		// the entry being displayed, not an edit
+		loading = CompletableFuture.completedFuture(entry);
+		String text = entry.orElse("");
+		textView.setEditable(false);
+		textView.getBuffer().setText(text, text.length());
+		fadeWidget(existingJournalKey, new DoneCallback() {
+			@Override
+			public void run() {
+				if (opening.isCompletedExceptionally()) {
+					return;
+				}
+				stack.setVisibleChildName(EDITOR_PAGE);
+				backButton.setVisible(false);
+				windowTitle.setSubtitle(path);
+			}
+		});
+	}
+
 	/**
 	 * Previous button handler.
 	 */
@@ -688,12 +962,73 @@ public class JournalWindow extends ApplicationWindow {
 	 * Save button handler.
 	 */
 	private void onSaveAction() {
-		if (EDITOR_PAGE.equals(stack.getVisibleChildName())) {
+		if (EDITOR_PAGE.equals(stack.getVisibleChildName()) && textView.getEditable()) {
 			LocalDate localDate = convert(calendar.getDate());
-			save(localDate, getText());
+			save(localDate, getText(), true);
+		}
+	}
+
+	/**
+	 * Search action handler, showing or hiding the search bar.
+	 */
+	private void onSearchAction() {
+		if (EDITOR_PAGE.equals(stack.getVisibleChildName())) {
+			searchBar.setSearchMode(!searchBar.getSearchMode());
+			if (searchBar.getSearchMode()) {
+				searchEntry.grabFocus();
+			}
+		}
+	}
+
+	/**
+	 * Called when the search text has changed and the user has stopped typing.
+	 * Searches in the background, showing the results once they're in.
+	 */
+	private void onSearchChanged() {
+		int search = ++searches;
+		JournalManager.search(searchEntry.getText())
+				.whenComplete((dates, throwable) -> Dispatcher.post(() -> onSearched(search, dates, throwable)));
+	}
+
+	/**
+	 * Called once a search is done, successfully or not. Shows the latest matching
+	 * dates first, up to {@link #MAX_RESULTS}. The results are ignored if another
+	 * search has been started since.
+	 *
+	 * @param search    int the number of the search
+	 * @param dates     {@link List} of {@link LocalDate} in ascending order
+	 * @param throwable {@link Throwable} null if the search succeeded
+	 */
+	private void onSearched(int search, List<LocalDate> dates, Throwable throwable) {
+		if (search != searches) {
+			return;
+		}
+		searchResults.removeAll();
+		if (throwable != null) {
+			searchDates = List.of();
+			notifyUser(throwable.getMessage());
+			return;
+		}
+		searchDates = dates.reversed().subList(0, Math.min(dates.size(), MAX_RESULTS));
+		for (LocalDate date : searchDates) {
+			Label label = new Label(date.toString());
+			label.setXalign(0);
+			label.setMarginStart(10);
+			label.setMarginTop(5);
+			label.setMarginBottom(5);
+			searchResults.append(label);
 		}
 	}
 
+	/**
+	 * Displays the date of the search result that was activated.
+	 *
+	 * @param row {@link ListBoxRow}
+	 */
+	private void onSearchResultActivated(ListBoxRow row) {
+		calendar.setDate(convert(searchDates.get(row.getIndex())));
+	}
+
 	/**
 	 * Selects today's date in the calendar.
 	 */
@@ -702,11 +1037,37 @@ public class JournalWindow extends ApplicationWindow {
 	}
 
 	/**
-	 * Prompts the user to save unsaved modifications to the text buffer.
+	 * Called when verification of the journal completes. Corrupt entries are
+	 * reported in a toast that can show them.
+	 *
+	 * @param corrupt   {@link List} of {@link LocalDate} of the corrupt entries
+	 * @param throwable {@link Throwable} null if verification succeeded
+	 */
+	private void onVerified(List<LocalDate> corrupt, Throwable throwable) {
+		if (throwable != null) {
+			notifyUser(throwable.getMessage());
+			return;
+		}
+		if (corrupt.isEmpty()) {
+			return;
+		}
+		Toast toast = new Toast(corrupt.size() == 1 ? "1 entry is corrupt."
+				: corrupt.size() + " entries are corrupt.");
+		toast.setButtonLabel("Show");
+		toast.setTimeout(0);
+		toast.onButtonClicked(() -> showCorruptEntries(corrupt));
+		toaster.addToast(toast);
+	}
+
+	/**
+	 * Prompts the user to save unsaved modifications to the text buffer. The
+	 * buffer still holds the previous date's text, so it's copied out now.
 	 *
 	 * @param newDate {@link LocalDate}
 	 */
 	private void promptToSavePrevious(LocalDate newDate) {
+		autosaver.cancel();
+		String previousText = getText();
 		AlertDialog alert = new AlertDialog("Unsaved Changes",
 				"Do you want to save your edits to " + previousDate + "?");
 		alert.addResponse(DISCARD, "Discard");
@@ -721,7 +1082,7 @@ public class JournalWindow extends ApplicationWindow {
 			switch (button) {
 			case "save": {
 				// save previous date's text
-				save(previousDate, previousText);
+				save(previousDate, previousText, true);
 				// display previous date
 				calendar.setDate(convert(previousDate));
 				setDirtyTitle(false);
@@ -735,12 +1096,10 @@ public class JournalWindow extends ApplicationWindow {
 				break;
 			}
 			case CANCEL: {
-				// store displayed text
-				String text = getText();
 				// go back to date selected before the alert
 				calendar.setDate(convert(previousDate));
 				// put the text back in the editor
-				textView.getBuffer().setText(text, text.length());
+				textView.getBuffer().setText(previousText, previousText.length());
 				// simulate the state before the click that caused the alert
 				setDirtyTitle(true);
 				break;
@@ -752,15 +1111,38 @@ public class JournalWindow extends ApplicationWindow {
 	}
 
 	/**
-	 * Starts a new thread that adds the current date and text as a new journal
-	 * entry, writes it to disk and updates the buffer modified flag and the window
-	 * title.
+	 * Queues the provided date and text to be added as a journal entry and written
+	 * to disk, showing the bytes written in the progress bar, then updates the
+	 * window title and, if asked to, notifies the user. The widgets are updated on
+	 * the main loop.
 	 *
-	 * @param date {@link LocalDate}
-	 * @param text {@link String}
+	 * @param date   {@link LocalDate}
+	 * @param text   {@link String}
+	 * @param notify boolean true to tell the user the save succeeded
+	 * @return {@link CompletableFuture} completed once the save is done and its
+	 *         updates are posted
 	 */
-	private void save(LocalDate date, String text) {
-		(new Thread(new SaveRunnable(date, text))).start();
+	private CompletableFuture<Void> save(LocalDate date, String text, boolean notify) {
+		int edit = edits;
+		progressBar.setFraction(0.0);
+		return JournalManager
+				.save(date, text, fraction -> Dispatcher.post(() -> progressBar.setFraction(fraction)))
+				.whenComplete((_, throwable) -> Dispatcher.post(() -> onSaved(date, text, edit, notify, throwable)));
+	}
+
+	/**
+	 * Enables or disables the calendar and the actions that navigate and edit
+	 * the journal, e.g. while it's still loading.
+	 *
+	 * @param enabled boolean
+	 */
+	private void setEditorEnabled(boolean enabled) {
+		calendar.setSensitive(enabled);
+		for (String name : EDITOR_ACTIONS) {
+			if (lookupAction(name) instanceof SimpleAction action) {
+				action.setEnabled(enabled);
+			}
+		}
 	}
 
 	/**
@@ -772,8 +1154,59 @@ public class JournalWindow extends ApplicationWindow {
 		windowTitle.setTitle(dirty ? "• Journal" : "Journal");
 	}
 
+	/**
+	 * Lists the dates of the provided corrupt entries in a dialog. Activating one
+	 * displays its date.
+	 *
+	 * @param corrupt {@link List} of {@link LocalDate}
+	 */
+	private void showCorruptEntries(List<LocalDate> corrupt) {
+		ListBox rows = new ListBox();
+		rows.setSelectionMode(SelectionMode.NONE);
+		rows.addCssClass("boxed-list");
+		for (LocalDate date : corrupt) {
+			Label label = new Label(date.toString());
+			label.setXalign(0);
+			label.setMarginStart(10);
+			label.setMarginTop(5);
+			label.setMarginBottom(5);
+			rows.append(label);
+		}
+		ScrolledWindow scroller = new ScrolledWindow();
+		scroller.setPolicy(PolicyType.NEVER, PolicyType.AUTOMATIC);
+		scroller.setPropagateNaturalHeight(true);
+		scroller.setMaxContentHeight(300);
+		scroller.setChild(rows);
+
+		AlertDialog alert = new AlertDialog("Corrupt Entries",
+				"The entries for these dates can't be decrypted. They were damaged or altered after being saved. "
+						+ "A backup of the journal may still have them intact.");
+		alert.setExtraChild(scroller);
+		alert.addResponse(CLOSE, "Close");
+		alert.setCloseResponse(CLOSE);
+		rows.onRowActivated(row -> {
+			calendar.setDate(convert(corrupt.get(row.getIndex())));
+			alert.close();
+		});
+		alert.present(this);
+	}
+
 	@Override
 	public String toString() {
 		return "JournalWindow [file=" + file + "]";
 	}
+
+	/**
+	 * Verifies every entry of the journal in the background, if enabled in
+	 * settings. It starts once the first entry is loaded, so it doesn't delay it,
+	 * and the editor can be used while it runs.
+	 */
+	private void verifyJournal() {
+		if (!settings.getBoolean("verify")) {
+			return;
+		}
+		CompletableFuture<?> first = loading == null ? CompletableFuture.completedFuture(null) : loading;
+		first.whenComplete((_, _) -> Dispatcher.post(() -> JournalManager.verifyJournal()
+				.whenComplete((corrupt, throwable) -> Dispatcher.post(() -> onVerified(corrupt, throwable)))));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.DoubleConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces files without ever leaving them truncated. Contents are written to a
+ * temporary file in the same folder, forced to disk and then moved over the
+ * target in one atomic step. A crash at any point leaves either the old or the
+ * new file in place.
+ */
+class AtomicWriter {
+
+	/**
+	 * Number of bytes written between progress reports.
+	 */
+	private static final int CHUNK = 64 * 1024;
+
+	/**
+	 * Gets the path of the provided generation of backups of the target.
+	 *
+	 * @param target     {@link Path}
+	 * @param generation int 1 being the most recent
+	 * @return {@link Path}
+	 */
+	static Path backup(Path target, int generation) {
+		return target.resolveSibling(target.getFileName() + "." + generation + ".bak");
+	}
+
+	/**
+	 * Deletes every backup of the target, however many generations there are.
+	 *
+	 * @param target {@link Path}
+	 * @throws IOException
+	 */
+	static void deleteBackups(Path target) throws IOException {
+		String pattern = Pattern.quote(target.getFileName().toString()) + "\\.[0-9]+\\.bak";
+		DirectoryStream.Filter<Path> filter = path -> path.getFileName().toString().matches(pattern);
+		try (DirectoryStream<Path> backups = Files.newDirectoryStream(target.toAbsolutePath().getParent(), filter)) {
+			for (Path path : backups) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	/**
+	 * Forces the provided folder's entries to disk so a rename survives a crash.
+	 * Not every platform supports this, in which case it's skipped.
+	 *
+	 * @param folder {@link Path}
+	 */
+	private static void forceFolder(Path folder) {
+		try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException _) {
+			// ignore, best effort
+		}
+	}
+
+	/**
+	 * Deletes temporary files left behind by writes that were interrupted, e.g. by
+	 * a crash.
+	 *
+	 * @param folder {@link Path}
+	 * @param name   {@link String} the target's file name
+	 * @throws IOException
+	 */
+	private static void removeStaleTemps(Path folder, String name) throws IOException {
+		String prefix = tempPrefix(name);
+		DirectoryStream.Filter<Path> filter = path -> {
+			String fileName = path.getFileName().toString();
+			return fileName.startsWith(prefix) && fileName.endsWith(".tmp");
+		};
+		try (DirectoryStream<Path> stale = Files.newDirectoryStream(folder, filter)) {
+			for (Path path : stale) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	/**
+	 * Shifts existing backups of the target back a generation, dropping the
+	 * oldest, and keeps the target as the most recent.
+	 *
+	 * @param target  {@link Path}
+	 * @param backups int number of generations to keep
+	 * @throws IOException
+	 */
+	private static void rotate(Path target, int backups) throws IOException {
+		Files.deleteIfExists(backup(target, backups));
+		for (int generation = backups - 1; generation >= 1; generation--) {
+			Path backup = backup(target, generation);
+			if (Files.exists(backup)) {
+				Files.move(backup, backup(target, generation + 1), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		Path latest = backup(target, 1);
+		try {
+			// cheap and keeps the target in place until the new one replaces it
+			Files.createLink(latest, target);
+		} catch (UnsupportedOperationException | FileSystemException _) {
+			Files.copy(target, latest, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Gets the prefix of the temporary files written for the target, distinct from
+	 * those of any other target in the folder, e.g. one whose name starts with the
+	 * target's.
+	 *
+	 * @param name {@link String} the target's file name
+	 * @return {@link String}
+	 */
+	private static String tempPrefix(String name) {
+		return name + ".tmp-";
+	}
+
+	/**
+	 * Atomically replaces the target with the provided contents, first keeping
+	 * the existing target as the most recent of the provided number of backups.
+	 *
+	 * @param target   {@link Path}
+	 * @param contents {@link ByteBuffer}
+	 * @param backups  int number of backup generations to keep, may be 0
+	 * @param progress {@link DoubleConsumer} told the fraction of the contents
+	 *                 written so far
+	 * @throws IOException
+	 */
+	static void write(Path target, ByteBuffer contents, int backups, DoubleConsumer progress) throws IOException {
+		Path folder = target.toAbsolutePath().getParent();
+		String name = target.getFileName().toString();
+		removeStaleTemps(folder, name);
+		Path temp = Files.createTempFile(folder, tempPrefix(name), ".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				write(channel, contents, progress);
+				channel.force(true);
+			}
+			if (backups > 0 && Files.exists(target)) {
+				rotate(target, backups);
+			}
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+			forceFolder(folder);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Writes all the remaining contents to the provided channel, a chunk at a
+	 * time, reporting progress after each chunk.
+	 *
+	 * @param channel  {@link FileChannel}
+	 * @param contents {@link ByteBuffer}
+	 * @param progress {@link DoubleConsumer} told the fraction of the contents
+	 *                 written so far
+	 * @throws IOException
+	 */
+	static void write(FileChannel channel, ByteBuffer contents, DoubleConsumer progress) throws IOException {
+		int start = contents.position();
+		double total = contents.remaining();
+		int limit = contents.limit();
+		while (contents.hasRemaining()) {
+			contents.limit(Math.min(limit, contents.position() + CHUNK));
+			while (contents.hasRemaining()) {
+				channel.write(contents);
+			}
+			contents.limit(limit);
+			progress.accept((contents.position() - start) / total);
+		}
+	}
+
+	/**
+	 * Constructor, hidden because all methods are static.
+	 */
+	private AtomicWriter() {
+	}
+}
@@ -0,0 +1,175 @@
+package ca.footeware.javagi.journal.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The sorted days, counted from the epoch, that have a journal entry. Kept up
+ * to date as entries are added and removed so that lookups neither parse date
+ * keys nor allocate. Each month with entries also has a mask of its days with
+ * entries, for marking a calendar, kept in an array parallel to the sorted
+ * months so looking one up doesn't allocate either.
+ */
+class DateIndex {
+
+	/**
+	 * Returned by lookups that find no day.
+	 */
+	static final long NONE = Long.MIN_VALUE;
+
+	/**
+	 * Gets the key of the provided month in {@link #monthKeys}.
+	 *
+	 * @param year  int
+	 * @param month int 1 to 12
+	 * @return int
+	 */
+	private static int monthKey(int year, int month) {
+		return year * 12 + month - 1;
+	}
+
+	private int[] days;
+	private int[] monthKeys;
+	private int[] monthMasks;
+	private int months;
+	private int size;
+
+	/**
+	 * Constructor.
+	 */
+	DateIndex() {
+		this.days = new int[16];
+		this.monthKeys = new int[16];
+		this.monthMasks = new int[16];
+	}
+
+	/**
+	 * Adds the provided day, if not already present.
+	 *
+	 * @param day int
+	 */
+	synchronized void add(int day) {
+		int index = Arrays.binarySearch(days, 0, size, day);
+		if (index >= 0) {
+			return;
+		}
+		int insertion = -(index + 1);
+		if (size == days.length) {
+			days = Arrays.copyOf(days, size * 2);
+		}
+		System.arraycopy(days, insertion, days, insertion + 1, size - insertion);
+		days[insertion] = day;
+		size++;
+		LocalDate date = LocalDate.ofEpochDay(day);
+		int key = monthKey(date.getYear(), date.getMonthValue());
+		int month = Arrays.binarySearch(monthKeys, 0, months, key);
+		if (month < 0) {
+			month = -(month + 1);
+			if (months == monthKeys.length) {
+				monthKeys = Arrays.copyOf(monthKeys, months * 2);
+				monthMasks = Arrays.copyOf(monthMasks, months * 2);
+			}
+			System.arraycopy(monthKeys, month, monthKeys, month + 1, months - month);
+			System.arraycopy(monthMasks, month, monthMasks, month + 1, months - month);
+			monthKeys[month] = key;
+			monthMasks[month] = 0;
+			months++;
+		}
+		monthMasks[month] |= 1 << (date.getDayOfMonth() - 1);
+	}
+
+	/**
+	 * Determines if the provided day is present.
+	 *
+	 * @param day int
+	 * @return boolean
+	 */
+	synchronized boolean contains(int day) {
+		return Arrays.binarySearch(days, 0, size, day) >= 0;
+	}
+
+	/**
+	 * Gets the earliest day.
+	 *
+	 * @return long the day or {@link #NONE} if empty
+	 */
+	synchronized long first() {
+		return size == 0 ? NONE : days[0];
+	}
+
+	/**
+	 * Gets the days of the provided month that are present, as a mask where bit 0
+	 * is the first of the month.
+	 *
+	 * @param year  int
+	 * @param month int 1 to 12
+	 * @return int
+	 */
+	synchronized int getMonth(int year, int month) {
+		int index = Arrays.binarySearch(monthKeys, 0, months, monthKey(year, month));
+		return index >= 0 ? monthMasks[index] : 0;
+	}
+
+	/**
+	 * Gets the earliest day after the provided one.
+	 *
+	 * @param day int
+	 * @return long the day or {@link #NONE} if there is none
+	 */
+	synchronized long higher(int day) {
+		int index = Arrays.binarySearch(days, 0, size, day);
+		int next = index >= 0 ? index + 1 : -(index + 1);
+		return next < size ? days[next] : NONE;
+	}
+
+	/**
+	 * Gets the latest day.
+	 *
+	 * @return long the day or {@link #NONE} if empty
+	 */
+	synchronized long last() {
+		return size == 0 ? NONE : days[size - 1];
+	}
+
+	/**
+	 * Gets the latest day before the provided one.
+	 *
+	 * @param day int
+	 * @return long the day or {@link #NONE} if there is none
+	 */
+	synchronized long lower(int day) {
+		int index = Arrays.binarySearch(days, 0, size, day);
+		int previous = (index >= 0 ? index : -(index + 1)) - 1;
+		return previous >= 0 ? days[previous] : NONE;
+	}
+
+	/**
+	 * Removes the provided day, if present.
+	 *
+	 * @param day int
+	 */
+	synchronized void remove(int day) {
+		int index = Arrays.binarySearch(days, 0, size, day);
+		if (index >= 0) {
+			System.arraycopy(days, index + 1, days, index, size - index - 1);
+			size--;
+			LocalDate date = LocalDate.ofEpochDay(day);
+			int month = Arrays.binarySearch(monthKeys, 0, months, monthKey(date.getYear(), date.getMonthValue()));
+			monthMasks[month] &= ~(1 << (date.getDayOfMonth() - 1));
+			if (monthMasks[month] == 0) {
+				System.arraycopy(monthKeys, month + 1, monthKeys, month, months - month - 1);
+				System.arraycopy(monthMasks, month + 1, monthMasks, month, months - month - 1);
+				months--;
+			}
+		}
+	}
+
+	/**
+	 * Gets a copy of the days, in ascending order.
+	 *
+	 * @return int array
+	 */
+	synchronized int[] toArray() {
+		return Arrays.copyOf(days, size);
+	}
+}
@@ -0,0 +1,28 @@
+package ca.footeware.javagi.journal.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the decryption of an entry.
+ */
+@Name("ca.footeware.javagi.journal.Decrypt")
+@Label("Decrypt")
+@Category({ "Journal", "Crypto" })
+@Description("An entry is decrypted.")
+@StackTrace(false)
+public final class DecryptEvent extends Event {
+
+	@Label("Date")
+	String date;
+
+	@Label("Size")
+	@Description("The size of the decrypted entry.")
+	@DataAmount
+	long size;
+}
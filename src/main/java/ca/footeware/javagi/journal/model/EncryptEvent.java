@@ -0,0 +1,29 @@
+package ca.footeware.javagi.journal.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the encryption of an entry, including its
+ * compression if enabled.
+ */
+@Name("ca.footeware.javagi.journal.Encrypt")
+@Label("Encrypt")
+@Category({ "Journal", "Crypto" })
+@Description("An entry is encrypted.")
+@StackTrace(false)
+public final class EncryptEvent extends Event {
+
+	@Label("Date")
+	String date;
+
+	@Label("Size")
+	@Description("The size of the entry before it's encrypted.")
+	@DataAmount
+	long size;
+}
@@ -0,0 +1,175 @@
+package ca.footeware.javagi.journal.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * A least-recently-used cache of decrypted entries, bounded by the total size
+ * of their UTF-8 bytes. Entries are wiped as they're evicted or invalidated.
+ */
+public class EntryCache {
+
+	private long budget;
+	private long bytes;
+	private LinkedHashMap<String, byte[]> entries;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param budget long maximum number of bytes of plaintext to keep
+	 */
+	EntryCache(long budget) {
+		this.budget = budget;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Wipes and removes every entry.
+	 */
+	synchronized void clear() {
+		entries.values().forEach(value -> Arrays.fill(value, (byte) 0));
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Determines if the provided key is cached, without counting a hit or a miss.
+	 *
+	 * @param key {@link String}
+	 * @return boolean
+	 */
+	synchronized boolean contains(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Evicts least recently used entries until the cache is within its budget.
+	 */
+	private void evict() {
+		Iterator<Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+		while (bytes > budget && iterator.hasNext()) {
+			byte[] value = iterator.next().getValue();
+			bytes -= value.length;
+			Arrays.fill(value, (byte) 0);
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Gets the cached plaintext for the provided key, counting a hit or a miss.
+	 *
+	 * @param key {@link String}
+	 * @return {@link String} may be null
+	 */
+	synchronized String get(String key) {
+		byte[] value = entries.get(key);
+		if (value == null) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return new String(value, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Gets the maximum number of bytes of plaintext kept.
+	 *
+	 * @return long
+	 */
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Gets the number of bytes of plaintext currently kept.
+	 *
+	 * @return long
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the number of lookups that found a cached entry.
+	 *
+	 * @return long
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that had to decrypt the entry.
+	 *
+	 * @return long
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Gets the number of entries currently kept.
+	 *
+	 * @return int
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * Wipes and removes the entry for the provided key, if cached.
+	 *
+	 * @param key {@link String}
+	 */
+	synchronized void invalidate(String key) {
+		byte[] value = entries.remove(key);
+		if (value != null) {
+			bytes -= value.length;
+			Arrays.fill(value, (byte) 0);
+		}
+	}
+
+	/**
+	 * Determines if the cache holds as many bytes as its budget allows.
+	 *
+	 * @return boolean
+	 */
+	synchronized boolean isFull() {
+		return bytes >= budget;
+	}
+
+	/**
+	 * Caches the plaintext for the provided key, evicting older entries as needed.
+	 * The cache takes ownership of the array. Entries larger than the budget are
+	 * wiped rather than kept.
+	 *
+	 * @param key   {@link String}
+	 * @param value byte array
+	 */
+	synchronized void put(String key, byte[] value) {
+		invalidate(key);
+		if (value.length > budget) {
+			Arrays.fill(value, (byte) 0);
+			return;
+		}
+		entries.put(key, value);
+		bytes += value.length;
+		evict();
+	}
+
+	/**
+	 * Sets the maximum number of bytes of plaintext to keep, evicting entries as
+	 * needed.
+	 *
+	 * @param budget long
+	 */
+	synchronized void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+}
@@ -3,56 +3,373 @@
  */
 package ca.footeware.javagi.journal.model;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
+import javax.crypto.SecretKey;
 
 /**
  * A wrapper around a {@link Properties} file persisting a {@link TreeMap} whose
  * keys are date {@link String}s in format yyyy-MM-dd and the values are
  * encrypted {@link String}s.
+ * <p>
+ * Format 2 files also hold a journal-level salt from which the key is derived
+ * once, when the journal is opened. Format 1 files, without those properties,
+ * salted every entry separately and are migrated on the next {@link #save()}.
+ * <p>
+ * Once in format 2, a save only appends the changed entries to a
+ * {@link JournalLog} beside the file. The log is folded back into the file on
+ * the writer's thread once enough of its records have been superseded, or it
+ * holds enough entries or bytes to slow down opening. The file is
+ * always replaced atomically, keeping the previous versions as backups.
+ * <p>
+ * Journals can instead be kept in the compact format of a
+ * {@link JournalContainer}, a binary file mapped into memory so opening only
+ * reads its index. A journal in the other format than the one set is converted
+ * the next time it's saved, so the setting both imports and exports Properties
+ * files.
+ * <p>
+ * Very large journals can be kept in {@link JournalShards} instead, a shard per
+ * year with the file as their manifest. Opening reads only the manifest and a
+ * shard is read the first time one of its entries is, and folding the log back
+ * only writes the shards of the years it changed.
+ * <p>
+ * A journal can be loaded with the entry for one date read first. Its key is
+ * derived on another thread as soon as the salt has been read, and the entry
+ * decrypted as soon as it has been too, so the entry can be shown while the
+ * rest of the file is still being read.
+ * <p>
+ * Decrypted entries are kept in an {@link EntryCache} so that returning to a
+ * date doesn't decrypt it again.
+ * <p>
+ * Entries are searched with a {@link SearchIndex}, kept encrypted beside the
+ * file. It's read the first time it's needed and brought up to date then by
+ * indexing only the entries that changed since it was written. After that it's
+ * updated as entries are added, and written out whenever the file is.
  */
 public class Journal {
 
+	/**
+	 * An {@link InputStream} that reports the fraction of its file read so far,
+	 * in steps of a percent.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long length;
+		private DoubleConsumer progress;
+		private long read;
+		private int reported;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param file     {@link File}
+		 * @param progress {@link DoubleConsumer} told the fraction read so far
+		 * @throws IOException
+		 */
+		private CountingInputStream(File file, DoubleConsumer progress) throws IOException {
+			super(new FileInputStream(file));
+			this.length = file.length();
+			this.progress = progress;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count > 0 && length > 0) {
+				read += count;
+				int percent = (int) (100 * read / length);
+				if (percent > reported) {
+					reported = percent;
+					progress.accept(percent / 100.0);
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Receives the entries decrypted by
+	 * {@link Journal#readEntries(BiPredicate, EntryReader)}.
+	 */
+	@FunctionalInterface
+	interface EntryReader {
+
+		/**
+		 * Reads an entry.
+		 *
+		 * @param key       {@link String}
+		 * @param tag       byte array, the GCM tag of the encrypted entry as
+		 *                  {@link SearchIndex#tag(ByteBuffer)} gets it
+		 * @param decrypted byte array of UTF-8 text, wiped once this returns; null if
+		 *                  the entry can't be decrypted
+		 * @throws JournalException to stop reading
+		 */
+		void read(String key, byte[] tag, byte[] decrypted) throws JournalException;
+	}
+
+	/**
+	 * The entry read first while the journal is loaded, and the derivation of the
+	 * key it's decrypted with.
+	 */
+	private final class FirstEntry {
+
+		private CompletableFuture<SecretKey> derivation;
+		private boolean found;
+		private String key;
+		private Consumer<String> reader;
+		private CompletableFuture<Void> reading;
+		private String value;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param key    {@link String} may be null to read no entry first
+		 * @param reader {@link Consumer} told the text of the entry
+		 */
+		private FirstEntry(String key, Consumer<String> reader) {
+			this.key = key;
+			this.reader = reader;
+		}
+
+		/**
+		 * Starts deriving the key from the password and the provided salt, on
+		 * another thread, if not already started.
+		 *
+		 * @param journalSalt byte array
+		 */
+		private void derive(byte[] journalSalt) {
+			if (derivation != null) {
+				return;
+			}
+			derivation = CompletableFuture.supplyAsync(() -> {
+				try {
+					return Superstar.generateAESKey(password, journalSalt);
+				} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+					throw new CompletionException(e);
+				}
+			}, DECRYPTERS);
+			read();
+		}
+
+		/**
+		 * Called with the encrypted value of the entry, once it's been read. Only
+		 * the first value found is used, so the log, read first, takes precedence
+		 * over the file.
+		 *
+		 * @param encrypted {@link String} null if the entry was removed
+		 */
+		private void found(String encrypted) {
+			if (!found) {
+				found = true;
+				value = encrypted;
+				read();
+			}
+		}
+
+		/**
+		 * Gets the key derived from the password and the provided salt, waiting for
+		 * it and for the entry to have been read.
+		 *
+		 * @param journalSalt byte array
+		 * @return {@link SecretKey}
+		 * @throws JournalException if the key cannot be derived
+		 */
+		private SecretKey getKey(byte[] journalSalt) throws JournalException {
+			derive(journalSalt);
+			try {
+				SecretKey secret = derivation.join();
+				if (reading != null) {
+					reading.join();
+				}
+				return secret;
+			} catch (CompletionException e) {
+				throw new JournalException(e.getCause().getMessage(), e.getCause());
+			}
+		}
+
+		/**
+		 * Decrypts the entry once both it and the key are known, and tells the
+		 * reader if it can be.
+		 */
+		private void read() {
+			if (reading == null && derivation != null && value != null) {
+				reading = derivation.thenAccept(secret -> {
+					byte[] decrypted = tryDecrypt(key, value, false, secret);
+					if (decrypted != null) {
+						tested = true;
+						try {
+							reader.accept(new String(decrypted, StandardCharsets.UTF_8));
+						} finally {
+							wipe(decrypted);
+						}
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * An entry fetched and decrypted by
+	 * {@link Journal#readEntries(BiPredicate, EntryReader)}.
+	 *
+	 * @param key       {@link String}
+	 * @param tag       byte array, the GCM tag of the encrypted entry
+	 * @param decrypted byte array, null if the entry can't be decrypted
+	 */
+	private record ReadEntry(String key, byte[] tag, byte[] decrypted) {
+	}
+
+	/**
+	 * Handles the results of {@link Journal#runInOrder(List, ResultHandler, Consumer)}.
+	 *
+	 * @param <T> the type of result
+	 */
+	@FunctionalInterface
+	private interface ResultHandler<T> {
+
+		/**
+		 * Handles a result.
+		 *
+		 * @param index  int of the task that produced it
+		 * @param result T
+		 * @throws JournalException to stop
+		 */
+		void handle(int index, T result) throws JournalException;
+	}
+
+	// a log is folded back into the file once any of these is exceeded
+	private static final int COMPACTION_DEAD_RECORDS = 100;
+	private static final int COMPACTION_RECORDS = 1000;
+	private static final long COMPACTION_SIZE = 4L << 20;
+	private static final ExecutorService DECRYPTERS = Executors.newWorkStealingPool();
+	private static final String FORMAT = "2";
+	private static final String FORMAT_KEY = "journal.format";
+	private static final String SALT_KEY = "journal.salt";
+	private static final int WINDOW = 4 * Runtime.getRuntime().availableProcessors();
+
+	private int backups;
+	private EntryCache cache;
+	private Set<String> changedKeys;
+	private boolean compact;
+	private boolean compress;
+	private DateIndex dateIndex;
 	private File file;
+	private SearchIndex index;
+	private final Object indexLock = new Object();
+	private Path indexPath;
+	// taken inside any other lock, and only around the search index's own
+	private final Object indexWriteLock = new Object();
+	private Set<String> legacyKeys;
+	private JournalLog log;
 	private Map<String, String> map;
 	private String password;
-	private Properties properties;
+	private boolean rewrite;
+	private byte[] salt;
+	private SecretKey secretKey;
+	private boolean sharded;
+	private boolean tested;
 
 	/**
 	 * Constructor.
 	 *
 	 * @param file     {@link File}
 	 * @param password {@link String}
-	 * @throws IOException if the journal cannot be loaded
+	 * @throws IOException      if the journal cannot be loaded
+	 * @throws JournalException if the key cannot be derived
+	 */
+	public Journal(File file, String password) throws IOException, JournalException {
+		this(file, password, null, _ -> {
+		}, _ -> {
+		});
+	}
+
+	/**
+	 * Constructor that reads the entry for the provided key first. If it's
+	 * decrypted, the password is correct.
+	 *
+	 * @param file     {@link File}
+	 * @param password {@link String}
+	 * @param first    {@link String} key of the entry to read first, may be null
+	 * @param reader   {@link Consumer} told the text of that entry, possibly on
+	 *                 another thread but before this returns, if it's in the
+	 *                 journal and can be decrypted
+	 * @param progress {@link DoubleConsumer} told the fraction of the file read so
+	 *                 far
+	 * @throws IOException      if the journal cannot be loaded
+	 * @throws JournalException if the key cannot be derived
 	 */
-	public Journal(File file, String password) throws IOException {
+	Journal(File file, String password, String first, Consumer<String> reader, DoubleConsumer progress)
+			throws IOException, JournalException {
 		this.file = file;
 		this.password = password;
 		this.map = new TreeMap<>();
-		this.properties = new Properties();
-		try (var in = new FileInputStream(file)) {
-			this.properties.load(in);
+		this.legacyKeys = new HashSet<>();
+		this.changedKeys = new HashSet<>();
+		this.cache = new EntryCache(0);
+		this.dateIndex = new DateIndex();
+		this.log = new JournalLog(Path.of(file.getPath() + ".log"));
+		this.indexPath = Path.of(file.getPath() + ".idx");
+		LoadEvent event = new LoadEvent();
+		event.begin();
+		FirstEntry firstEntry = new FirstEntry(first, reader);
+		if (JournalShards.isManifest(file.toPath())) {
+			loadShards(firstEntry);
+		} else if (JournalContainer.isContainer(file.toPath())) {
+			loadContainer(firstEntry);
+		} else {
+			loadProperties(firstEntry, progress);
+		}
+		progress.accept(1);
+		map.keySet().forEach(key -> dateIndex.add(toDay(key)));
+		if (event.shouldCommit()) {
+			event.compact = compact;
+			event.entries = map.size();
+			event.size = file.length();
+			event.commit();
 		}
-		/*
-		 * The TreeMap, this.map, is natively sorted by key (so date strings are
-		 * ascending), is the data model object. The Properties file, this.properties,
-		 * is the persistence vector. Copy its entries to the map.
-		 */
-		this.properties.entrySet().forEach(entry -> map.put((String) entry.getKey(), (String) entry.getValue()));
 	}
 
 	/**
@@ -68,17 +385,152 @@ public class Journal {
 	 * @throws InvalidAlgorithmParameterException
 	 * @throws InvalidKeySpecException
 	 */
-	public void addEntry(String key, String value)
+	public synchronized void addEntry(String key, String value)
 			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
 			BadPaddingException, InvalidAlgorithmParameterException, InvalidKeySpecException {
 		if (value == null || value.isBlank()) {
 			map.remove(key);
+			dateIndex.remove(toDay(key));
+			if (index != null) {
+				index.remove(toDay(key));
+			}
 		} else {
-			String encrypted = Superstar.encrypt(value, password);
+			String encrypted = encrypt(key, value.getBytes(StandardCharsets.UTF_8), secretKey);
 			map.put(key, encrypted);
+			dateIndex.add(toDay(key));
+			if (index != null) {
+				index.put(toDay(key), encrypted, value);
+			}
+		}
+		legacyKeys.remove(key);
+		changedKeys.add(key);
+		cache.invalidate(key);
+	}
+
+	/**
+	 * Re-encrypts every entry with a key derived from the provided password and a
+	 * new salt, decrypting and encrypting in parallel, then atomically replaces
+	 * the journal file. Any log is first folded into the file under the current
+	 * password, so if this is interrupted, or fails, before the file is replaced,
+	 * the journal is left as it was. Once it's replaced, the backups of the
+	 * journal file are deleted, as they'd still open with the old password. So is
+	 * the search index, which is then written again under the new key if it's
+	 * been read, and otherwise rebuilt the next time it's needed.
+	 *
+	 * @param newPassword {@link String}
+	 * @param progress    {@link DoubleConsumer} told the fraction of the work done
+	 *                    so far
+	 * @throws IOException      if the journal file cannot be written
+	 * @throws JournalException if an entry cannot be re-encrypted, the new key
+	 *                          cannot be derived or the thread is interrupted
+	 */
+	public synchronized void changePassword(String newPassword, DoubleConsumer progress)
+			throws IOException, JournalException {
+		if (!log.isEmpty()) {
+			write(_ -> {
+			});
+		}
+		byte[] newSalt = Superstar.generateSalt();
+		SecretKey newKey;
+		try {
+			newKey = Superstar.generateAESKey(newPassword, newSalt);
+		} catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+			throw new JournalException(e.getMessage(), e);
+		}
+		List<String> keys = new ArrayList<>(map.keySet());
+		List<Callable<String>> tasks = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			String value = map.get(key);
+			boolean legacy = legacyKeys.contains(key);
+			tasks.add(() -> {
+				byte[] decrypted = tryDecrypt(key, value, legacy, secretKey);
+				if (decrypted == null) {
+					throw new JournalException("Error: the entry for " + key + " could not be decrypted.");
+				}
+				try {
+					return encrypt(key, decrypted, newKey);
+				} finally {
+					wipe(decrypted);
+				}
+			});
+		}
+		Map<String, String> reencrypted = new TreeMap<>();
+		int step = Math.max(1, keys.size() / 100);
+		runInOrder(tasks, (i, encrypted) -> {
+			reencrypted.put(keys.get(i), encrypted);
+			if ((i + 1) % step == 0) {
+				progress.accept(0.9 * (i + 1) / keys.size());
+			}
+		}, _ -> {
+		});
+		writeFile(reencrypted, newSalt, fraction -> progress.accept(0.9 + 0.1 * fraction));
+		// they'd still open with the old password, which may be why it's changed
+		AtomicWriter.deleteBackups(file.toPath());
+		if (index != null) {
+			reencrypted.forEach((key, encrypted) -> index.rehash(toDay(key), map.get(key), encrypted));
+		}
+		map = reopen(reencrypted);
+		password = newPassword;
+		salt = newSalt;
+		secretKey = newKey;
+		legacyKeys.clear();
+		rewrite = false;
+		log.clear();
+		changedKeys.clear();
+		// its words would still be read with the old password
+		Files.deleteIfExists(indexPath);
+		if (index != null) {
+			writeIndex(index, true);
+		}
+	}
+
+	/**
+	 * Wipes and removes all decrypted entries from the cache.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Folds the log back into the journal file, if it has any records.
+	 *
+	 * @throws IOException if the file cannot be written, leaving the log intact
+	 */
+	synchronized void compact() throws IOException {
+		if (!log.isEmpty()) {
+			write(_ -> {
+			});
 		}
 	}
 
+	/**
+	 * Gets the cache of decrypted entries, e.g. for its hit and miss counts.
+	 *
+	 * @return {@link EntryCache}
+	 */
+	public EntryCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Gets an entry from the cache, without decrypting it.
+	 *
+	 * @param key {@link String}
+	 * @return {@link String} null if the entry isn't cached
+	 */
+	String getCachedEntry(String key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * Gets the index of entry dates.
+	 *
+	 * @return {@link DateIndex}
+	 */
+	DateIndex getDateIndex() {
+		return dateIndex;
+	}
+
 	/**
 	 * Gets all entries from the journal.
 	 *
@@ -89,7 +541,7 @@ public class Journal {
 	}
 
 	/**
-	 * Gets an entry from the journal.
+	 * Gets an entry from the journal, from the cache if it was decrypted before.
 	 *
 	 * @param key {@link String}
 	 * @return {@link String} may be null if there's no entry for the provided date
@@ -102,40 +554,691 @@ public class Journal {
 	 * @throws InvalidKeySpecException
 	 * @throws JournalException 
 	 */
-	public String getEntry(String key)
+	public synchronized String getEntry(String key)
 			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
 			BadPaddingException, InvalidAlgorithmParameterException, InvalidKeySpecException, IllegalArgumentException {
-		String encrypted = map.get(key);
-		if (encrypted != null) {
-			return Superstar.decrypt(encrypted, password);
+		String cached = cache.get(key);
+		return cached != null ? cached : loadEntry(key);
+	}
+
+	/**
+	 * Gets the search index, reading it from disk the first time. Entries that
+	 * changed since it was written are indexed again and, if anything changed, it's
+	 * written back.
+	 *
+	 * @return {@link SearchIndex}
+	 */
+	SearchIndex getIndex() {
+		synchronized (indexLock) {
+			synchronized (this) {
+				if (index != null) {
+					return index;
+				}
+			}
+			SearchIndex loaded = readIndex();
+			// most of the decrypting, without holding up the journal
+			reconcile(loaded);
+			synchronized (this) {
+				// entries added meanwhile
+				reconcile(loaded);
+				index = loaded;
+			}
+			writeIndex(loaded, false);
+			return loaded;
+		}
+	}
+
+	/**
+	 * Decrypts the provided value with the per-entry salt of format 1 entries or
+	 * the journal key otherwise.
+	 *
+	 * @param key       {@link String}
+	 * @param encrypted {@link String}
+	 * @return byte array of UTF-8 text
+	 * @throws InvalidKeyException
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws InvalidKeySpecException
+	 */
+	private byte[] decrypt(String key, String encrypted)
+			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
+			BadPaddingException, InvalidAlgorithmParameterException, InvalidKeySpecException {
+		return decrypt(key, encrypted, legacyKeys.contains(key), secretKey);
+	}
+
+	/**
+	 * Decrypts the provided value with the per-entry salt of format 1 entries or
+	 * the provided key otherwise, recording a {@link DecryptEvent}.
+	 *
+	 * @param key        {@link String}
+	 * @param encrypted  {@link String}
+	 * @param legacy     boolean true if the entry is in format 1
+	 * @param journalKey {@link SecretKey}
+	 * @return byte array of UTF-8 text
+	 * @throws InvalidKeyException
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws InvalidKeySpecException
+	 */
+	private byte[] decrypt(String key, String encrypted, boolean legacy, SecretKey journalKey)
+			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
+			BadPaddingException, InvalidAlgorithmParameterException, InvalidKeySpecException {
+		DecryptEvent event = new DecryptEvent();
+		event.begin();
+		byte[] decrypted = legacy ? Superstar.decrypt(encrypted, password).getBytes(StandardCharsets.UTF_8)
+				: Superstar.decrypt(Base64.getDecoder().decode(encrypted), journalKey);
+		if (event.shouldCommit()) {
+			event.date = key;
+			event.size = decrypted.length;
+			event.commit();
+		}
+		return decrypted;
+	}
+
+	/**
+	 * Decrypts the provided raw format 2 value with the provided key, recording a
+	 * {@link DecryptEvent}.
+	 *
+	 * @param key        {@link String}
+	 * @param encrypted  {@link ByteBuffer} of the encrypted entry, e.g. a view of a
+	 *                   mapped file
+	 * @param journalKey {@link SecretKey}
+	 * @return byte array of UTF-8 text
+	 * @throws InvalidKeyException
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws InvalidAlgorithmParameterException
+	 */
+	private byte[] decrypt(String key, ByteBuffer encrypted, SecretKey journalKey)
+			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
+			BadPaddingException, InvalidAlgorithmParameterException {
+		DecryptEvent event = new DecryptEvent();
+		event.begin();
+		ByteBuffer plaintext = Superstar.decrypt(encrypted, journalKey);
+		byte[] decrypted = plaintext.array();
+		if (plaintext.arrayOffset() + plaintext.position() != 0 || plaintext.remaining() != decrypted.length) {
+			decrypted = Arrays.copyOfRange(decrypted, plaintext.arrayOffset() + plaintext.position(),
+					plaintext.arrayOffset() + plaintext.limit());
+			wipe(plaintext.array());
+		}
+		if (event.shouldCommit()) {
+			event.date = key;
+			event.size = decrypted.length;
+			event.commit();
+		}
+		return decrypted;
+	}
+
+	/**
+	 * Encrypts the provided plaintext, compressing it first if enabled, recording
+	 * an {@link EncryptEvent}.
+	 *
+	 * @param key        {@link String}
+	 * @param plaintext  byte array of UTF-8 text
+	 * @param journalKey {@link SecretKey}
+	 * @return {@link String} the encrypted entry in Base64
+	 * @throws InvalidKeyException
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws InvalidAlgorithmParameterException
+	 */
+	private String encrypt(String key, byte[] plaintext, SecretKey journalKey)
+			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
+			BadPaddingException, InvalidAlgorithmParameterException {
+		EncryptEvent event = new EncryptEvent();
+		event.begin();
+		String encrypted = Base64.getEncoder().encodeToString(Superstar.encrypt(plaintext, journalKey, compress));
+		if (event.shouldCommit()) {
+			event.date = key;
+			event.size = plaintext.length;
+			event.commit();
+		}
+		return encrypted;
+	}
+
+	/**
+	 * Determines if the provided password is the journal's.
+	 *
+	 * @param candidate {@link String}
+	 * @return boolean
+	 */
+	synchronized boolean isPassword(String candidate) {
+		return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+				candidate.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Determines if the entry for the provided key is cached, without counting a
+	 * hit or a miss.
+	 *
+	 * @param key {@link String}
+	 * @return boolean
+	 */
+	boolean isCached(String key) {
+		return cache.contains(key);
+	}
+
+	/**
+	 * Determines if the journal is kept in {@link JournalShards}.
+	 *
+	 * @return boolean
+	 */
+	synchronized boolean isSharded() {
+		return sharded;
+	}
+
+	/**
+	 * Reads a journal file in the compact format. Only its index is read; entries
+	 * are read from the file as they're needed.
+	 *
+	 * @param first {@link FirstEntry}
+	 * @throws IOException      if the file isn't a valid compact journal
+	 * @throws JournalException if the key cannot be derived
+	 */
+	private void loadContainer(FirstEntry first) throws IOException, JournalException {
+		JournalContainer container = JournalContainer.open(file.toPath());
+		this.map = container;
+		this.salt = container.getSalt();
+		this.compact = true;
+		first.derive(salt);
+		log.replay(map);
+		if (first.key != null) {
+			first.found(map.get(first.key));
+		}
+		this.secretKey = first.getKey(salt);
+	}
+
+	/**
+	 * Decrypts an entry from the journal and caches it.
+	 *
+	 * @param key {@link String}
+	 * @return {@link String} may be null if there's no entry for the provided date
+	 * @throws InvalidKeyException
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws InvalidKeySpecException
+	 */
+	synchronized String loadEntry(String key)
+			throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, IllegalBlockSizeException,
+			BadPaddingException, InvalidAlgorithmParameterException, InvalidKeySpecException {
+		byte[] decrypted;
+		if (map instanceof RawEntries raw) {
+			// in format 2, as compact journals always are
+			ByteBuffer encrypted = raw.getBytes(key);
+			if (encrypted == null) {
+				return null;
+			}
+			decrypted = decrypt(key, encrypted, secretKey);
+		} else {
+			String encrypted = map.get(key);
+			if (encrypted == null) {
+				return null;
+			}
+			decrypted = decrypt(key, encrypted);
 		}
-		return null;
+		String entry = new String(decrypted, StandardCharsets.UTF_8);
+		cache.put(key, decrypted);
+		return entry;
 	}
 
 	/**
-	 * Saves the journal to disk.
+	 * Reads a journal file in the Properties format. The entries of the log are
+	 * read first, so the entry to read first can be decrypted as soon as it's
+	 * found. The key is derived as soon as the salt is read.
 	 *
+	 * @param first    {@link FirstEntry}
+	 * @param progress {@link DoubleConsumer} told the fraction of the file read so
+	 *                 far
+	 * @throws IOException      if the file cannot be read
+	 * @throws JournalException if the format is unsupported or the key cannot be
+	 *                          derived
+	 */
+	private void loadProperties(FirstEntry first, DoubleConsumer progress) throws IOException, JournalException {
+		Map<String, String> changes = log.read();
+		if (changes.containsKey(first.key)) {
+			first.found(changes.get(first.key));
+		}
+		Properties loaded = new Properties() {
+
+			@Override
+			public synchronized Object put(Object key, Object value) {
+				if (SALT_KEY.equals(key)) {
+					try {
+						first.derive(Base64.getDecoder().decode((String) value));
+					} catch (IllegalArgumentException _) {
+						// reported once loaded
+					}
+				} else if (key.equals(first.key)) {
+					first.found((String) value);
+				}
+				return super.put(key, value);
+			}
+		};
+		try (var in = new CountingInputStream(file, progress)) {
+			loaded.load(in);
+		}
+		/*
+		 * The TreeMap, this.map, is natively sorted by key (so date strings are
+		 * ascending), is the data model object. The Properties file is the
+		 * persistence vector. Copy its date entries to the map.
+		 */
+		String format = (String) loaded.remove(FORMAT_KEY);
+		String encodedSalt = (String) loaded.remove(SALT_KEY);
+		loaded.entrySet().forEach(entry -> map.put((String) entry.getKey(), (String) entry.getValue()));
+		try {
+			if (format == null) {
+				// format 1 (or a new, empty journal); entries carry their own salts
+				legacyKeys.addAll(map.keySet());
+				this.salt = Superstar.generateSalt();
+				this.rewrite = true;
+			} else if (FORMAT.equals(format) && encodedSalt != null) {
+				this.salt = Base64.getDecoder().decode(encodedSalt);
+				JournalLog.replay(changes, map);
+			} else {
+				throw new JournalException("Error: unsupported journal format " + format + ".");
+			}
+		} catch (IllegalArgumentException e) {
+			throw new JournalException(e.getMessage(), e);
+		}
+		this.secretKey = first.getKey(salt);
+	}
+
+	/**
+	 * Reads the manifest of a journal kept in shards. No shard is read but the one
+	 * of the entry to read first, if any; the others are read as their entries are
+	 * needed.
+	 *
+	 * @param first {@link FirstEntry}
+	 * @throws IOException      if the manifest isn't valid
+	 * @throws JournalException if the key cannot be derived
+	 */
+	private void loadShards(FirstEntry first) throws IOException, JournalException {
+		JournalShards shards = JournalShards.open(file.toPath());
+		this.map = shards;
+		this.salt = shards.getSalt();
+		this.sharded = true;
+		first.derive(salt);
+		log.replay(map);
+		if (first.key != null) {
+			try {
+				first.found(map.get(first.key));
+			} catch (UncheckedIOException _) {
+				// reported if the entry is displayed
+			}
+		}
+		this.secretKey = first.getKey(salt);
+	}
+
+	/**
+	 * Re-encrypts any format 1 entries with the journal key. Each needs its own
+	 * key derivation, so they're re-encrypted in parallel.
+	 *
+	 * @throws JournalException if an entry cannot be re-encrypted or the calling
+	 *                          thread is interrupted
+	 */
+	private void migrate() throws JournalException {
+		List<String> keys = new ArrayList<>(legacyKeys);
+		List<Callable<String>> tasks = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			String legacy = map.get(key);
+			tasks.add(() -> {
+				try {
+					return encrypt(key, Superstar.decrypt(legacy, password).getBytes(StandardCharsets.UTF_8),
+							secretKey);
+				} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException
+						| InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException
+						| InvalidKeySpecException | IllegalArgumentException e) {
+					throw new JournalException("Error migrating journal: " + e.getMessage(), e);
+				}
+			});
+		}
+		runInOrder(tasks, (i, encrypted) -> {
+			String key = keys.get(i);
+			String legacy = map.put(key, encrypted);
+			if (index != null) {
+				index.rehash(toDay(key), legacy, encrypted);
+			}
+		}, _ -> {
+		});
+		legacyKeys.clear();
+	}
+
+	/**
+	 * Determines if the log should be folded back into the journal file, because
+	 * enough of its records have been superseded or it holds enough entries or
+	 * bytes that replaying it slows down opening.
+	 *
+	 * @return boolean
+	 */
+	synchronized boolean needsCompaction() {
+		return log.getDeadRecords() > COMPACTION_DEAD_RECORDS || log.getRecords() > COMPACTION_RECORDS
+				|| log.getSize() > COMPACTION_SIZE;
+	}
+
+	/**
+	 * Reads the entries accepted by the provided filter in key, i.e. date, order.
+	 * They're decrypted in parallel, at most {@link #WINDOW} ahead of the one being
+	 * read so memory stays bounded, and passed to the reader on the calling
+	 * thread. Only the days with entries are copied up front; each entry is
+	 * fetched as its turn in the window comes, so it's read as it is then and
+	 * skipped if it's been removed. The entries of a compact journal are
+	 * decrypted straight from the mapped file, without going through Base64.
+	 *
+	 * @param filter {@link BiPredicate} given each key and the GCM tag of its
+	 *               encrypted value, called while the journal is locked
+	 * @param reader {@link EntryReader}
+	 * @throws JournalException if the reader stops or the calling thread is
+	 *                          interrupted
+	 */
+	void readEntries(BiPredicate<String, byte[]> filter, EntryReader reader) throws JournalException {
+		int[] days = dateIndex.toArray();
+		List<Callable<ReadEntry>> tasks = new AbstractList<>() {
+
+			// called on the calling thread as the entry's slot in the window opens, so
+			// the decrypting threads never wait on the journal's lock
+			@Override
+			public Callable<ReadEntry> get(int index) {
+				String date = LocalDate.ofEpochDay(days[index]).toString();
+				synchronized (Journal.this) {
+					SecretKey key = secretKey;
+					if (map instanceof RawEntries raw) {
+						// in format 2, as compact journals always are
+						ByteBuffer encrypted = raw.getBytes(date);
+						if (encrypted == null) {
+							return () -> null;
+						}
+						byte[] tag = SearchIndex.tag(encrypted);
+						if (!filter.test(date, tag)) {
+							return () -> null;
+						}
+						return () -> new ReadEntry(date, tag, tryDecrypt(date, encrypted, key));
+					}
+					String value = map.get(date);
+					if (value == null) {
+						return () -> null;
+					}
+					byte[] tag = SearchIndex.tag(value);
+					if (!filter.test(date, tag)) {
+						return () -> null;
+					}
+					boolean legacy = legacyKeys.contains(date);
+					return () -> new ReadEntry(date, tag, tryDecrypt(date, value, legacy, key));
+				}
+			}
+
+			@Override
+			public int size() {
+				return days.length;
+			}
+		};
+		runInOrder(tasks, (_, entry) -> {
+			if (entry != null) {
+				try {
+					reader.read(entry.key(), entry.tag(), entry.decrypted());
+				} finally {
+					wipe(entry.decrypted());
+				}
+			}
+		}, entry -> {
+			if (entry != null) {
+				wipe(entry.decrypted());
+			}
+		});
+	}
+
+	/**
+	 * Reads the search index from disk.
+	 *
+	 * @return {@link SearchIndex} empty if there is none or it can't be read, e.g.
+	 *         because it was encrypted with another key
+	 */
+	private SearchIndex readIndex() {
+		if (Files.exists(indexPath)) {
+			try {
+				byte[] bytes = Superstar.decrypt(Files.readAllBytes(indexPath), secretKey);
+				SearchIndex read = SearchIndex.fromBytes(bytes);
+				Arrays.fill(bytes, (byte) 0);
+				return read;
+			} catch (IOException | InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException
+					| IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException
+					| IllegalArgumentException _) {
+				// rebuilt from the entries
+			}
+		}
+		return new SearchIndex();
+	}
+
+	/**
+	 * Brings the provided search index up to date with the entries, indexing those
+	 * whose encrypted value has changed since they were indexed and removing those
+	 * that are gone. Entries that can't be decrypted aren't indexed.
+	 *
+	 * @param stale {@link SearchIndex}
+	 */
+	private void reconcile(SearchIndex stale) {
+		try {
+			readEntries((key, tag) -> !stale.isCurrent(toDay(key), tag), (key, tag, decrypted) -> {
+				if (decrypted == null) {
+					stale.remove(toDay(key));
+				} else {
+					stale.put(toDay(key), tag, new String(decrypted, StandardCharsets.UTF_8));
+				}
+			});
+		} catch (JournalException _) {
+			// interrupted; what's left is indexed the next time the index is read
+		}
+		Set<Integer> days = new HashSet<>();
+		synchronized (this) {
+			map.keySet().forEach(key -> days.add(toDay(key)));
+		}
+		for (int day : stale.getDays()) {
+			if (!days.contains(day)) {
+				stale.remove(day);
+			}
+		}
+	}
+
+	/**
+	 * Opens the journal file again after it's been written, for its format.
+	 *
+	 * @param written {@link Map} of the entries written, kept as the entries of a
+	 *                Properties file
+	 * @return {@link Map} of keys to encrypted values
 	 * @throws IOException
 	 */
-	public void save() throws IOException {
-		properties.clear();
-		map.forEach((k, v) -> properties.put(k, v));
-		try (var out = new FileOutputStream(file)) {
-			properties.store(out, null);
+	private Map<String, String> reopen(Map<String, String> written) throws IOException {
+		if (sharded) {
+			return JournalShards.open(file.toPath());
+		}
+		if (compact) {
+			// entries changed since opening are now in the file
+			return JournalContainer.open(file.toPath());
+		}
+		return written;
+	}
+
+	/**
+	 * Runs the provided tasks in parallel, at most {@link #WINDOW} ahead of the one
+	 * whose result is being handled so memory stays bounded, and hands their
+	 * results to the handler in order on the calling thread. If the handler
+	 * throws, the remaining tasks are cancelled and results already computed are
+	 * discarded.
+	 *
+	 * @param <T>     the type of result
+	 * @param tasks   {@link List} of {@link Callable}
+	 * @param handler {@link ResultHandler}
+	 * @param discard {@link Consumer} given results that won't be handled
+	 * @throws JournalException if the handler or a task throws or the calling
+	 *                          thread is interrupted
+	 */
+	private static <T> void runInOrder(List<Callable<T>> tasks, ResultHandler<T> handler, Consumer<T> discard)
+			throws JournalException {
+		Deque<Future<T>> window = new ArrayDeque<>();
+		int next = 0;
+		try {
+			for (int i = 0; i < tasks.size(); i++) {
+				while (next < tasks.size() && window.size() < WINDOW) {
+					window.add(DECRYPTERS.submit(tasks.get(next++)));
+				}
+				handler.handle(i, window.remove().get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JournalException("Error: interrupted while reading journal.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof JournalException cause) {
+				throw cause;
+			}
+			throw new JournalException("Error reading journal: " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			for (Future<T> future : window) {
+				if (!future.cancel(true) && future.state() == Future.State.SUCCESS) {
+					discard.accept(future.resultNow());
+				}
+			}
 		}
 	}
 
 	/**
-	 * Checks the password can decrypt an entry.
+	 * Saves the journal to disk. Format 1 journals are migrated and written in
+	 * full, otherwise changes since the last save are appended to the log.
+	 *
+	 * @throws IOException
+	 * @throws JournalException if format 1 entries cannot be migrated
+	 */
+	public void save() throws IOException, JournalException {
+		save(_ -> {
+		});
+	}
+
+	/**
+	 * Saves the journal to disk, reporting progress. Format 1 journals are
+	 * migrated and written in full, otherwise changes since the last save are
+	 * appended to the log.
+	 *
+	 * @param progress {@link DoubleConsumer} told the fraction of bytes written so
+	 *                 far
+	 * @throws IOException
+	 * @throws JournalException if format 1 entries cannot be migrated
+	 */
+	public synchronized void save(DoubleConsumer progress) throws IOException, JournalException {
+		SaveEvent event = new SaveEvent();
+		event.begin();
+		boolean full = rewrite;
+		int entries;
+		long size;
+		if (full) {
+			migrate();
+			entries = map.size();
+			size = write(progress);
+			rewrite = false;
+		} else {
+			entries = changedKeys.size();
+			size = log.append(changedKeys, map, progress);
+			changedKeys.clear();
+		}
+		if (event.shouldCommit()) {
+			event.full = full;
+			event.entries = entries;
+			event.size = size;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Finds the days whose entries contain every word of the provided query, each
+	 * as a prefix of a word. The search index is read the first time.
+	 *
+	 * @param query {@link String}
+	 * @return int array of days counted from the epoch, in ascending order
+	 */
+	public int[] search(String query) {
+		return getIndex().search(query);
+	}
+
+	/**
+	 * Sets the number of previous versions of the journal file to keep when it's
+	 * written in full.
+	 *
+	 * @param backups int
+	 */
+	public synchronized void setBackups(int backups) {
+		this.backups = backups;
+	}
+
+	/**
+	 * Sets the maximum number of bytes of decrypted entries to cache.
+	 *
+	 * @param budget long
+	 */
+	public void setCacheBudget(long budget) {
+		cache.setBudget(budget);
+	}
+
+	/**
+	 * Sets whether the journal file is written in the compact format of a
+	 * {@link JournalContainer} rather than as a Properties file. A journal in the
+	 * other format is converted the next time it's saved.
+	 *
+	 * @param compact boolean
+	 */
+	public synchronized void setCompact(boolean compact) {
+		if (this.compact != compact) {
+			this.compact = compact;
+			// shards are always compact
+			rewrite |= !sharded;
+		}
+	}
+
+	/**
+	 * Sets whether entries are compressed before they're encrypted. Only entries
+	 * saved from now on are affected; either kind can be read.
+	 *
+	 * @param compress boolean
+	 */
+	public synchronized void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Sets whether the journal is kept in {@link JournalShards}, a shard per year,
+	 * rather than in one file. A journal kept the other way is converted the next
+	 * time it's saved.
+	 *
+	 * @param sharded boolean
+	 */
+	public synchronized void setSharded(boolean sharded) {
+		if (this.sharded != sharded) {
+			this.sharded = sharded;
+			rewrite = true;
+		}
+	}
+
+	/**
+	 * Checks the password can decrypt an entry, unless the entry read first while
+	 * loading already has.
 	 *
 	 * @return boolean true if password worked
 	 * @throws JournalException 
 	 */
-	public boolean testPassword() throws JournalException {
-		if (!map.isEmpty()) {
+	public synchronized boolean testPassword() throws JournalException {
+		if (!tested && !map.isEmpty()) {
 			Entry<String, String> entry = map.entrySet().iterator().next();
 			try {
-				Superstar.decrypt(entry.getValue(), password);
+				decrypt(entry.getKey(), entry.getValue());
 			} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException
 					| InvalidAlgorithmParameterException | IllegalBlockSizeException | BadPaddingException
 					| InvalidKeySpecException | IllegalArgumentException e) {
@@ -144,4 +1247,176 @@ public class Journal {
 		}
 		return true; // new journal
 	}
+
+	/**
+	 * Stores the provided entries and salt as the contents of a format 2 journal
+	 * file, or a compact one.
+	 *
+	 * @param entries     {@link Map} of keys to encrypted values
+	 * @param journalSalt byte array
+	 * @return byte array
+	 * @throws IOException
+	 */
+	private byte[] store(Map<String, String> entries, byte[] journalSalt) throws IOException {
+		if (compact) {
+			return JournalContainer.toBytes(entries, journalSalt);
+		}
+		Map<Object, Object> ordered = new LinkedHashMap<>();
+		ordered.put(FORMAT_KEY, FORMAT);
+		ordered.put(SALT_KEY, Base64.getEncoder().encodeToString(journalSalt));
+		ordered.putAll(entries);
+		Properties properties = new Properties() {
+
+			@Override
+			public Set<Entry<Object, Object>> entrySet() {
+				// stored in this order rather than sorted, so the salt is read first and
+				// the key derived while the entries are still being read
+				return ordered.entrySet();
+			}
+		};
+		var out = new ByteArrayOutputStream();
+		properties.store(out, null);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Converts a date key to its day counted from the epoch.
+	 *
+	 * @param key {@link String} a date in the format yyyy-mm-dd
+	 * @return int
+	 */
+	private static int toDay(String key) {
+		return (int) LocalDate.parse(key).toEpochDay();
+	}
+
+	/**
+	 * Decrypts the provided value with the per-entry salt of format 1 entries or
+	 * the provided key otherwise.
+	 *
+	 * @param date      {@link String} the entry's key
+	 * @param encrypted {@link String}
+	 * @param legacy    boolean true if the entry is in format 1
+	 * @param key       {@link SecretKey} the journal key
+	 * @return byte array of UTF-8 text, null if it can't be decrypted
+	 */
+	private byte[] tryDecrypt(String date, String encrypted, boolean legacy, SecretKey key) {
+		try {
+			return decrypt(date, encrypted, legacy, key);
+		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
+				| BadPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException
+				| IllegalArgumentException _) {
+			return null;
+		}
+	}
+
+	/**
+	 * Decrypts the provided format 2 value with the provided key, returning null if
+	 * it can't be decrypted.
+	 *
+	 * @param date      {@link String} the entry's key
+	 * @param encrypted {@link ByteBuffer} of the raw encrypted entry
+	 * @param key       {@link SecretKey} the journal key
+	 * @return byte array of UTF-8 text, null if it can't be decrypted
+	 */
+	private byte[] tryDecrypt(String date, ByteBuffer encrypted, SecretKey key) {
+		try {
+			return decrypt(date, encrypted, key);
+		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
+				| BadPaddingException | InvalidAlgorithmParameterException | IllegalArgumentException _) {
+			return null;
+		}
+	}
+
+	/**
+	 * Wipes the provided plaintext.
+	 *
+	 * @param plaintext byte array, may be null
+	 */
+	private static void wipe(byte[] plaintext) {
+		if (plaintext != null) {
+			Arrays.fill(plaintext, (byte) 0);
+		}
+	}
+
+	/**
+	 * Writes the journal to its file, or the shards of the years that changed,
+	 * and empties the log.
+	 *
+	 * @param progress {@link DoubleConsumer} told the fraction of bytes written so
+	 *                 far
+	 * @return int the number of bytes written
+	 * @throws IOException
+	 */
+	private int write(DoubleConsumer progress) throws IOException {
+		if (!sharded && !compact && !(map instanceof TreeMap)) {
+			// read in full before the files it's read from are replaced
+			map = new TreeMap<>(map);
+		}
+		int size = writeFile(map, salt, progress);
+		map = reopen(map);
+		log.clear();
+		changedKeys.clear();
+		if (index != null) {
+			writeIndex(index, false);
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the provided entries and salt to the journal file in its format. In
+	 * shards, only the shards of years that changed are written if the entries are
+	 * the journal's own. In one file, any shards left from before a conversion are
+	 * deleted.
+	 *
+	 * @param entries     {@link Map} of keys to encrypted values
+	 * @param journalSalt byte array
+	 * @param progress    {@link DoubleConsumer} told the fraction of bytes written
+	 *                    so far
+	 * @return int the number of bytes written
+	 * @throws IOException
+	 */
+	private int writeFile(Map<String, String> entries, byte[] journalSalt, DoubleConsumer progress)
+			throws IOException {
+		if (sharded) {
+			return JournalShards.write(file.toPath(), entries, journalSalt, backups, progress);
+		}
+		byte[] bytes = store(entries, journalSalt);
+		AtomicWriter.write(file.toPath(), ByteBuffer.wrap(bytes), backups, progress);
+		JournalShards.delete(file.toPath());
+		return bytes.length;
+	}
+
+	/**
+	 * Writes the provided search index, encrypted, beside the journal file if it
+	 * has changed or is forced to, one write at a time. It's only marked as written once the write
+	 * succeeds. A failure is only logged; the index stays dirty, so the next save
+	 * tries again.
+	 *
+	 * @param searchIndex {@link SearchIndex}
+	 * @param force       boolean true to write it even if it hasn't changed
+	 */
+	private void writeIndex(SearchIndex searchIndex, boolean force) {
+		synchronized (indexWriteLock) {
+			int changes;
+			byte[] bytes;
+			// the bytes and the count of changes they include are taken together
+			synchronized (searchIndex) {
+				if (!force && !searchIndex.isDirty()) {
+					return;
+				}
+				changes = searchIndex.getChanges();
+				bytes = searchIndex.toBytes();
+			}
+			try {
+				AtomicWriter.write(indexPath, ByteBuffer.wrap(Superstar.encrypt(bytes, secretKey)), 0, _ -> {
+				});
+				searchIndex.markWritten(changes);
+			} catch (IOException | InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException
+					| IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException e) {
+				e.printStackTrace();
+			} finally {
+				Arrays.fill(bytes, (byte) 0);
+			}
+		}
+	}
 }
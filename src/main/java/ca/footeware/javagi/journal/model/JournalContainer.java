@@ -0,0 +1,401 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * The entries of a journal file in the compact format, read by mapping the file
+ * into memory. The file is a header, an index of the entries sorted by date and
+ * the encrypted entries themselves, as raw bytes:
+ *
+ * <pre>
+ * "JRNL", version int, salt length short, salt
+ * entry count int
+ * for each entry: day int (counted from the epoch), offset int, length int
+ * CRC32 int of all the above
+ * encrypted entries, at their offsets from the start of the file
+ * </pre>
+ *
+ * Opening reads only the header and the index. An entry's bytes are read when
+ * its value is got, encoded in Base64 like the values of a Properties journal
+ * file, or are decrypted straight from the mapped file through
+ * {@link #getBytes(String)}. Entries put or removed after opening are kept in
+ * memory, over those of the file, until the journal is written in full again.
+ */
+class JournalContainer extends AbstractMap<String, String> implements RawEntries {
+
+	/**
+	 * An entry of the file, whose value is read when it's got.
+	 */
+	private final class MappedEntry implements Map.Entry<String, String> {
+
+		private int index;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param index int of the entry in the file's index
+		 */
+		private MappedEntry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public String getKey() {
+			return LocalDate.ofEpochDay(days[index]).toString();
+		}
+
+		@Override
+		public String getValue() {
+			return read(index);
+		}
+
+		@Override
+		public String setValue(String value) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static final int INDEX_ENTRY = 12;
+	private static final byte[] MAGIC = { 'J', 'R', 'N', 'L' };
+	private static final int VERSION = 1;
+
+	/**
+	 * Determines if the provided file is in the compact format.
+	 *
+	 * @param path {@link Path}
+	 * @return boolean
+	 * @throws IOException
+	 */
+	static boolean isContainer(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// read until full or at the end of the file
+			}
+			return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+		}
+	}
+
+	/**
+	 * Opens the provided file in the compact format.
+	 *
+	 * @param path {@link Path}
+	 * @return {@link JournalContainer}
+	 * @throws IOException if the file cannot be read or isn't a valid journal in
+	 *                     the compact format
+	 */
+	static JournalContainer open(Path path) throws IOException {
+		MappedByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("Error: journal file is too large.");
+			}
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("Error: not a compact journal file.");
+			}
+			if (buffer.getInt() != VERSION) {
+				throw new IOException("Error: unsupported compact journal version.");
+			}
+			byte[] salt = new byte[buffer.getShort()];
+			buffer.get(salt);
+			int count = buffer.getInt();
+			if (count < 0 || count > buffer.remaining() / INDEX_ENTRY) {
+				throw new IOException("Error: corrupt compact journal index.");
+			}
+			int[] days = new int[count];
+			int[] offsets = new int[count];
+			int[] lengths = new int[count];
+			for (int i = 0; i < count; i++) {
+				days[i] = buffer.getInt();
+				offsets[i] = buffer.getInt();
+				lengths[i] = buffer.getInt();
+			}
+			CRC32 crc = new CRC32();
+			crc.update(buffer.slice(0, buffer.position()));
+			if (buffer.getInt() != (int) crc.getValue()) {
+				throw new IOException("Error: corrupt compact journal index.");
+			}
+			for (int i = 0; i < count; i++) {
+				if ((i > 0 && days[i] <= days[i - 1]) || offsets[i] < buffer.position() || lengths[i] < 0
+						|| offsets[i] > buffer.limit() - lengths[i]) {
+					throw new IOException("Error: corrupt compact journal index.");
+				}
+			}
+			return new JournalContainer(buffer, salt, days, offsets, lengths);
+		} catch (RuntimeException e) {
+			// a truncated header or index
+			throw new IOException("Error: corrupt compact journal file.", e);
+		}
+	}
+
+	/**
+	 * Converts a date key to its day counted from the epoch.
+	 *
+	 * @param key {@link Object}
+	 * @return long the day or {@link Long#MIN_VALUE} if the key isn't a date
+	 */
+	private static long toDay(Object key) {
+		if (key instanceof String date) {
+			try {
+				return LocalDate.parse(date).toEpochDay();
+			} catch (DateTimeException _) {
+				// not a key of the journal
+			}
+		}
+		return Long.MIN_VALUE;
+	}
+
+	/**
+	 * Stores the provided entries and salt as the contents of a journal file in the
+	 * compact format.
+	 *
+	 * @param entries {@link Map} of keys to encrypted values, in Base64, in key
+	 *                order
+	 * @param salt    byte array
+	 * @return byte array
+	 * @throws IOException if the entries are too large for the format
+	 */
+	static byte[] toBytes(Map<String, String> entries, byte[] salt) throws IOException {
+		int count = entries.size();
+		int[] days = new int[count];
+		byte[][] values = new byte[count][];
+		long size = MAGIC.length + 4 + 2 + salt.length + 4 + (long) count * INDEX_ENTRY + 4;
+		int i = 0;
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			days[i] = (int) LocalDate.parse(entry.getKey()).toEpochDay();
+			values[i] = Base64.getDecoder().decode(entry.getValue());
+			size += values[i].length;
+			i++;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Error: journal is too large for the compact format.");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		buffer.put(MAGIC).putInt(VERSION).putShort((short) salt.length).put(salt).putInt(count);
+		int offset = buffer.position() + count * INDEX_ENTRY + 4;
+		for (i = 0; i < count; i++) {
+			buffer.putInt(days[i]).putInt(offset).putInt(values[i].length);
+			offset += values[i].length;
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		for (byte[] value : values) {
+			buffer.put(value);
+		}
+		return buffer.array();
+	}
+
+	private MappedByteBuffer buffer;
+	private TreeMap<String, String> changes;
+	private int[] days;
+	private int[] lengths;
+	private int[] offsets;
+	private byte[] salt;
+	private int size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer  {@link MappedByteBuffer} of the whole file
+	 * @param salt    byte array
+	 * @param days    int array, ascending
+	 * @param offsets int array
+	 * @param lengths int array
+	 */
+	private JournalContainer(MappedByteBuffer buffer, byte[] salt, int[] days, int[] offsets, int[] lengths) {
+		this.buffer = buffer;
+		this.salt = salt;
+		this.days = days;
+		this.offsets = offsets;
+		this.lengths = lengths;
+		this.size = days.length;
+		this.changes = new TreeMap<>();
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (changes.containsKey(key)) {
+			return changes.get(key) != null;
+		}
+		return find(key) >= 0;
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new Iterator<>() {
+
+					private Iterator<Map.Entry<String, String>> changed = changes.entrySet().iterator();
+					private Map.Entry<String, String> change = nextChange();
+					private int i;
+					private Map.Entry<String, String> next = advance();
+
+					/**
+					 * Finds the next entry, in key order, from the file or the changes, the
+					 * latter replacing the former.
+					 *
+					 * @return {@link Map.Entry} null if there are none left
+					 */
+					private Map.Entry<String, String> advance() {
+						while (i < days.length || change != null) {
+							String key = i < days.length ? LocalDate.ofEpochDay(days[i]).toString() : null;
+							int order = key == null ? 1 : change == null ? -1 : key.compareTo(change.getKey());
+							Map.Entry<String, String> entry;
+							if (order < 0) {
+								entry = new MappedEntry(i++);
+							} else {
+								if (order == 0) {
+									i++;
+								}
+								entry = change;
+								change = nextChange();
+							}
+							if (entry instanceof MappedEntry || entry.getValue() != null) {
+								return entry;
+							}
+						}
+						return null;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next != null;
+					}
+
+					@Override
+					public Map.Entry<String, String> next() {
+						if (next == null) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<String, String> current = next;
+						next = advance();
+						return current;
+					}
+
+					/**
+					 * Gets the next change.
+					 *
+					 * @return {@link Map.Entry} null if there are none left
+					 */
+					private Map.Entry<String, String> nextChange() {
+						return changed.hasNext() ? changed.next() : null;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Finds the provided key in the file's index.
+	 *
+	 * @param key {@link Object}
+	 * @return int its index, negative if it isn't in the file
+	 */
+	private int find(Object key) {
+		long day = toDay(key);
+		return day == Long.MIN_VALUE ? -1 : Arrays.binarySearch(days, (int) day);
+	}
+
+	@Override
+	public String get(Object key) {
+		if (changes.containsKey(key)) {
+			return changes.get(key);
+		}
+		int index = find(key);
+		return index < 0 ? null : read(index);
+	}
+
+	/**
+	 * Gets the encrypted value of an entry as raw bytes: a view of the mapped file
+	 * if the entry hasn't changed since opening.
+	 *
+	 * @param key {@link String}
+	 * @return {@link ByteBuffer} null if there's no entry
+	 */
+	@Override
+	public ByteBuffer getBytes(String key) {
+		if (changes.containsKey(key)) {
+			String value = changes.get(key);
+			return value == null ? null : ByteBuffer.wrap(Base64.getDecoder().decode(value));
+		}
+		int index = find(key);
+		return index < 0 ? null : buffer.slice(offsets[index], lengths[index]);
+	}
+
+	/**
+	 * Gets the salt the journal key is derived with.
+	 *
+	 * @return byte array
+	 */
+	byte[] getSalt() {
+		return salt;
+	}
+
+	@Override
+	public String put(String key, String value) {
+		String previous = get(key);
+		if (previous == null) {
+			size++;
+		}
+		changes.put(key, value);
+		return previous;
+	}
+
+	/**
+	 * Reads the value of an entry of the file.
+	 *
+	 * @param index int of the entry in the file's index
+	 * @return {@link String} the encrypted entry in Base64
+	 */
+	private String read(int index) {
+		byte[] bytes = new byte[lengths[index]];
+		buffer.get(offsets[index], bytes);
+		return Base64.getEncoder().encodeToString(bytes);
+	}
+
+	@Override
+	public String remove(Object key) {
+		String previous = get(key);
+		if (previous != null) {
+			size--;
+			changes.put((String) key, null);
+		}
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
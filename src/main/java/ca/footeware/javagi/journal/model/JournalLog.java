@@ -0,0 +1,245 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of changes made to a {@link Journal} since its file was
+ * last written in full. Each record is its payload length, the payload (an
+ * operation byte, the date key and the encrypted value) and a CRC32 of the
+ * payload. A torn record at the end of the log, e.g. after a crash, is dropped.
+ */
+class JournalLog {
+
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 0;
+
+	private int deadRecords;
+	private Set<String> keys;
+	private Path path;
+	private long size;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param path {@link Path} of the log file, which need not exist
+	 */
+	JournalLog(Path path) {
+		this.path = path;
+		this.keys = new HashSet<>();
+	}
+
+	/**
+	 * Appends a record for each of the provided keys, with its value in the
+	 * provided map or a removal if absent, and forces them to disk.
+	 *
+	 * @param changed  {@link Set} of {@link String} keys
+	 * @param map      {@link Map} of keys to encrypted values
+	 * @param progress {@link DoubleConsumer} told the fraction of the records
+	 *                 written so far
+	 * @return int the number of bytes appended
+	 * @throws IOException
+	 */
+	int append(Set<String> changed, Map<String, String> map, DoubleConsumer progress) throws IOException {
+		if (changed.isEmpty()) {
+			return 0;
+		}
+		int size = 0;
+		byte[][] payloads = new byte[changed.size()][];
+		int i = 0;
+		for (String key : changed) {
+			payloads[i] = encode(key, map.get(key));
+			size += payloads[i].length + 8;
+			i++;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		CRC32 crc = new CRC32();
+		for (byte[] payload : payloads) {
+			crc.reset();
+			crc.update(payload);
+			buffer.putInt(payload.length).put(payload).putInt((int) crc.getValue());
+		}
+		buffer.flip();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			AtomicWriter.write(channel, buffer, progress);
+			channel.force(true);
+		}
+		for (String key : changed) {
+			count(key);
+		}
+		this.size += size;
+		return size;
+	}
+
+	/**
+	 * Empties the log, after its changes have been written to the journal file.
+	 *
+	 * @throws IOException
+	 */
+	void clear() throws IOException {
+		if (Files.exists(path)) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				channel.truncate(0);
+				channel.force(true);
+			}
+		}
+		keys.clear();
+		deadRecords = 0;
+		size = 0;
+	}
+
+	/**
+	 * Keeps track of records superseded by the latest one for the provided key.
+	 *
+	 * @param key {@link String}
+	 */
+	private void count(String key) {
+		if (!keys.add(key)) {
+			deadRecords++;
+		}
+	}
+
+	/**
+	 * Encodes a record's payload.
+	 *
+	 * @param key   {@link String}
+	 * @param value {@link String} may be null for a removal
+	 * @return byte array
+	 */
+	private byte[] encode(String key, String value) {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		byte[] valueBytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+		return ByteBuffer.allocate(1 + 2 + keyBytes.length + valueBytes.length)
+				.put(value == null ? REMOVE : PUT)
+				.putShort((short) keyBytes.length)
+				.put(keyBytes)
+				.put(valueBytes)
+				.array();
+	}
+
+	/**
+	 * Gets the number of records that have been superseded by later records for
+	 * the same key.
+	 *
+	 * @return int
+	 */
+	int getDeadRecords() {
+		return deadRecords;
+	}
+
+	/**
+	 * Gets the number of keys the log has records for, i.e. its records that
+	 * haven't been superseded.
+	 *
+	 * @return int
+	 */
+	int getRecords() {
+		return keys.size();
+	}
+
+	/**
+	 * Gets the number of bytes of records in the log.
+	 *
+	 * @return long
+	 */
+	long getSize() {
+		return size;
+	}
+
+	/**
+	 * Determines if the log has no records.
+	 *
+	 * @return boolean
+	 */
+	boolean isEmpty() {
+		return keys.isEmpty();
+	}
+
+	/**
+	 * Reads the log's records, keeping the latest for each key. The log is
+	 * truncated after the last intact record.
+	 *
+	 * @return {@link Map} of keys to encrypted values, null for removals
+	 * @throws IOException
+	 */
+	Map<String, String> read() throws IOException {
+		Map<String, String> changes = new HashMap<>();
+		if (!Files.exists(path)) {
+			return changes;
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+		CRC32 crc = new CRC32();
+		int intact = 0;
+		while (buffer.remaining() >= 4) {
+			int length = buffer.getInt();
+			if (length < 3 || length > buffer.remaining() - 4) {
+				break;
+			}
+			byte[] payload = new byte[length];
+			buffer.get(payload);
+			crc.reset();
+			crc.update(payload);
+			if (buffer.getInt() != (int) crc.getValue()) {
+				break;
+			}
+			ByteBuffer record = ByteBuffer.wrap(payload);
+			byte operation = record.get();
+			byte[] keyBytes = new byte[record.getShort()];
+			record.get(keyBytes);
+			String key = new String(keyBytes, StandardCharsets.UTF_8);
+			changes.put(key, operation == PUT
+					? new String(payload, record.position(), record.remaining(), StandardCharsets.UTF_8)
+					: null);
+			count(key);
+			intact = buffer.position();
+		}
+		if (intact < buffer.limit()) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+				channel.truncate(intact);
+				channel.force(true);
+			}
+		}
+		size = intact;
+		return changes;
+	}
+
+	/**
+	 * Applies the log's records to the provided map. The log is truncated after
+	 * the last intact record.
+	 *
+	 * @param map {@link Map} of keys to encrypted values
+	 * @throws IOException
+	 */
+	void replay(Map<String, String> map) throws IOException {
+		replay(read(), map);
+	}
+
+	/**
+	 * Applies records previously read from a log to the provided map.
+	 *
+	 * @param changes {@link Map} of keys to encrypted values, null for removals, as
+	 *                returned by {@link #read()}
+	 * @param map     {@link Map} of keys to encrypted values
+	 */
+	static void replay(Map<String, String> changes, Map<String, String> map) {
+		changes.forEach((key, value) -> {
+			if (value == null) {
+				map.remove(key);
+			} else {
+				map.put(key, value);
+			}
+		});
+	}
+}
@@ -6,6 +6,8 @@ package ca.footeware.javagi.journal.model;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.InvalidAlgorithmParameterException;
@@ -15,8 +17,19 @@ import java.security.spec.InvalidKeySpecException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -30,8 +43,41 @@ import org.javagi.base.Filename;
  */
 public class JournalManager {
 
+	private static int backups = 3;
+	private static long cacheBudget = 4L * 1024 * 1024;
+	private static boolean compact;
+	private static boolean compress;
 	private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-	private static Journal journal;
+	private static volatile Journal journal;
+	private static final ExecutorService opener = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-opener");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static Future<?> prefetch;
+	private static final ExecutorService prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-prefetcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final ExecutorService reader = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-reader");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static final ExecutorService searcher = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-searcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static Future<?> verification;
+	private static final ExecutorService verifier = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-verifier");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private static boolean sharded;
+	private static final JournalWriter writer = new JournalWriter();
 
 	/**
 	 * Add an entry to the journal.
@@ -41,22 +87,130 @@ public class JournalManager {
 	 * @throws JournalException
 	 */
 	public static void addEntry(LocalDate key, String value) throws JournalException {
+		addEntry(journal, key, value);
+	}
+
+	/**
+	 * Add an entry to the provided journal.
+	 *
+	 * @param target {@link Journal}
+	 * @param key    {@link LocalDate}
+	 * @param value  {@link String} the text of the entry, to be encrypted
+	 * @throws JournalException
+	 */
+	static void addEntry(Journal target, LocalDate key, String value) throws JournalException {
 		try {
-			journal.addEntry(key.format(dateFormatter), value);
+			target.addEntry(key.format(dateFormatter), value);
 		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
 				| BadPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException e) {
 			throw new JournalException("Error adding entry to journal.", e);
 		}
 	}
 
+	/**
+	 * Stops decrypting entries ahead of time, if a prefetch is in progress.
+	 */
+	public static synchronized void cancelPrefetch() {
+		if (prefetch != null) {
+			prefetch.cancel(true);
+			prefetch = null;
+		}
+	}
+
+	/**
+	 * Cancels the verification in progress, if any.
+	 */
+	public static synchronized void cancelVerification() {
+		if (verification != null) {
+			verification.cancel(true);
+			verification = null;
+		}
+	}
+
+	/**
+	 * Changes the journal's password, re-encrypting every entry in parallel and
+	 * replacing the journal file atomically, on its own thread. The journal is left
+	 * as it was if this fails.
+	 *
+	 * @param currentPassword {@link String} must match the journal's password
+	 * @param newPassword     {@link String}
+	 * @param progress        {@link DoubleConsumer} told, on that thread, the
+	 *                        fraction of the work done so far
+	 * @return {@link CompletableFuture} completed, on that thread, once the journal
+	 *         is saved with the new password or exceptionally with a
+	 *         {@link JournalException}
+	 */
+	public static CompletableFuture<Void> changePassword(String currentPassword, String newPassword,
+			DoubleConsumer progress) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Journal current = journal;
+		if (!current.isPassword(currentPassword)) {
+			future.completeExceptionally(new JournalException("Incorrect password."));
+			return future;
+		}
+		new Thread(() -> {
+			try {
+				current.changePassword(newPassword, progress);
+				future.complete(null);
+			} catch (IOException e) {
+				future.completeExceptionally(new JournalException("Error saving journal.", e));
+			} catch (JournalException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}, "journal-password").start();
+		return future;
+	}
+
+	/**
+	 * Checks that the file at the provided path exists and can be written.
+	 *
+	 * @param path {@link String}
+	 * @return {@link File}
+	 * @throws IOException if the file is not found or is read-only
+	 */
+	private static File checkFile(String path) throws IOException {
+		File file = new File(path);
+		if (!file.exists()) {
+			throw new IOException("File not found: " + file.getAbsolutePath());
+		}
+		if (!file.canWrite()) {
+			throw new IOException("File is read-only: " + file.getAbsolutePath());
+		}
+		return file;
+	}
+
+	/**
+	 * Applies the settings to the provided journal.
+	 *
+	 * @param newJournal {@link Journal}
+	 * @return {@link Journal} the one provided
+	 */
+	private static Journal configure(Journal newJournal) {
+		newJournal.setBackups(backups);
+		newJournal.setCacheBudget(cacheBudget);
+		newJournal.setCompact(compact);
+		newJournal.setCompress(compress);
+		newJournal.setSharded(sharded);
+		return newJournal;
+	}
+
+	/**
+	 * Waits for queued saves to be written, as the application quits. No saves are
+	 * accepted after.
+	 */
+	public static void close() {
+		writer.close();
+	}
+
 	/**
 	 * Creates a new journal in the provided file using the provided password.
 	 *
 	 * @param file     {@link org.gnome.gio.File}
 	 * @param password {@link String}
 	 * @throws IOException
+	 * @throws JournalException if the journal key cannot be derived
 	 */
-	public static void createJournal(org.gnome.gio.File file, String password) throws IOException {
+	public static void createJournal(org.gnome.gio.File file, String password) throws IOException, JournalException {
 		if (file == null) {
 			throw new FileNotFoundException("File is null");
 		}
@@ -74,8 +228,9 @@ public class JournalManager {
 	 * @param pathName {@link String}
 	 * @param password {@link String}
 	 * @throws IOException
+	 * @throws JournalException if the journal key cannot be derived
 	 */
-	public static void createJournal(String pathName, String password) throws IOException {
+	public static void createJournal(String pathName, String password) throws IOException, JournalException {
 		File file = new File(pathName);
 		if (file.exists()) {
 			// Gtk.FileDialog will have prompted to replace (I hope)
@@ -87,32 +242,81 @@ public class JournalManager {
 		}
 		boolean fileCreated = file.createNewFile();
 		if (fileCreated) {
-			journal = new Journal(file, password);
+			setJournal(configure(new Journal(file, password)));
 		} else {
 			throw new IOException("Error: file " + pathName + " could not be created.");
 		}
 	}
 
+	/**
+	 * Finds the journal entry for the provided date, decrypting it unless it's
+	 * cached.
+	 *
+	 * @param date {@link LocalDate}
+	 * @return {@link Optional} of the entry's text, empty if there's no entry
+	 * @throws JournalException
+	 */
+	public static Optional<String> findEntry(LocalDate date) throws JournalException {
+		if (date == null) {
+			throw new JournalException("Error: Provided date must not be null.");
+		}
+		String key = date.format(dateFormatter);
+		String cached = journal.getCachedEntry(key);
+		return cached != null ? Optional.of(cached) : loadEntry(journal, key);
+	}
+
+	/**
+	 * Finds the journal entry for the provided date, decrypting it on the journal's
+	 * reader thread unless it's cached. Dates without an entry and cached entries
+	 * are returned already completed.
+	 *
+	 * @param date {@link LocalDate}
+	 * @return {@link CompletableFuture} completed with an {@link Optional} of the
+	 *         entry's text, empty if there's no entry, or exceptionally with a
+	 *         {@link JournalException}
+	 */
+	public static CompletableFuture<Optional<String>> findEntryAsync(LocalDate date) {
+		if (date == null) {
+			return CompletableFuture.failedFuture(new JournalException("Error: Provided date must not be null."));
+		}
+		Journal current = journal;
+		if (!current.getDateIndex().contains((int) date.toEpochDay())) {
+			return CompletableFuture.completedFuture(Optional.empty());
+		}
+		String key = date.format(dateFormatter);
+		String cached = current.getCachedEntry(key);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(Optional.of(cached));
+		}
+		CompletableFuture<Optional<String>> future = new CompletableFuture<>();
+		reader.execute(() -> {
+			try {
+				future.complete(loadEntry(current, key));
+			} catch (JournalException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Gets the cache of decrypted entries of the current journal.
+	 *
+	 * @return {@link EntryCache} may be null if no journal is open
+	 */
+	public static EntryCache getEntryCache() {
+		return journal == null ? null : journal.getCache();
+	}
+
 	/**
 	 * Gets the journal entry for provided date.
 	 *
 	 * @param date {@link LocalDate}
-	 * @return {@link String}
+	 * @return {@link String} null if there's no entry
 	 * @throws JournalException
 	 */
 	public static String getEntry(LocalDate date) throws JournalException {
-		try {
-			if (date == null) {
-				throw new IllegalArgumentException("Provided date must not be null.");
-			}
-			String formatted = date.format(dateFormatter);
-			return journal.getEntry(formatted);
-		} catch (IllegalArgumentException e) {
-			throw new JournalException("Error: " + e.getMessage(), e);
-		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
-				| BadPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException e) {
-			throw new JournalException("Error fetching journal entry.", e);
-		}
+		return findEntry(date).orElse(null);
 	}
 
 	/**
@@ -121,25 +325,33 @@ public class JournalManager {
 	 * @return {@link List} of {@link LocalDate}
 	 */
 	public static List<LocalDate> getEntryDates() {
-		List<LocalDate> keys = new ArrayList<>();
-		Map<String, String> entries = journal.getEntries();
-		for (String key : entries.keySet()) {
-			keys.add(LocalDate.parse(key, dateFormatter));
+		int[] days = journal.getDateIndex().toArray();
+		List<LocalDate> keys = new ArrayList<>(days.length);
+		for (int day : days) {
+			keys.add(LocalDate.ofEpochDay(day));
 		}
 		return keys;
 	}
 
+	/**
+	 * Gets the days of the provided month that have entries.
+	 *
+	 * @param year  int
+	 * @param month int 1 to 12
+	 * @return int a mask where bit 0 is set if the first of the month has an entry,
+	 *         bit 1 the second and so on
+	 */
+	public static int getEntryDays(int year, int month) {
+		return journal.getDateIndex().getMonth(year, month);
+	}
+
 	/**
 	 * Get the first journal entry date (key).
 	 *
 	 * @return {@link LocalDate}
 	 */
 	public static LocalDate getFirstEntryDate() {
-		List<LocalDate> entryDates = getEntryDates();
-		if (!entryDates.isEmpty()) {
-			return entryDates.get(0);
-		}
-		return null;
+		return toDate(journal.getDateIndex().first());
 	}
 
 	/**
@@ -148,11 +360,7 @@ public class JournalManager {
 	 * @return {@link LocalDate}
 	 */
 	public static LocalDate getLastEntryDate() {
-		List<LocalDate> entryDates = getEntryDates();
-		if (!entryDates.isEmpty()) {
-			return entryDates.get(entryDates.size() - 1);
-		}
-		return null;
+		return toDate(journal.getDateIndex().last());
 	}
 
 	/**
@@ -163,23 +371,9 @@ public class JournalManager {
 	 *         subsequent entry.
 	 */
 	public static LocalDate getNextEntryDate(LocalDate selectedDate) {
-		List<LocalDate> entryDates = getEntryDates();
-		switch (entryDates.size()) {
-		case 0 -> {
-			return selectedDate;
-		}
-		case 1 -> {
-			return entryDates.get(0).isAfter(selectedDate) ? entryDates.get(0) : selectedDate;
-		}
-		default -> {
-			LocalDate nextDate = parseForNext(selectedDate, entryDates);
-			if (nextDate != null) {
-				return nextDate;
-			}
-		}
-		}
+		LocalDate nextDate = toDate(journal.getDateIndex().higher((int) selectedDate.toEpochDay()));
 		// fallback is same date
-		return selectedDate;
+		return nextDate == null ? selectedDate : nextDate;
 	}
 
 	/**
@@ -190,23 +384,9 @@ public class JournalManager {
 	 *         previous entry
 	 */
 	public static LocalDate getPreviousEntryDate(LocalDate selectedDate) {
-		List<LocalDate> entryDates = getEntryDates();
-		switch (entryDates.size()) {
-		case 0 -> {
-			return selectedDate;
-		}
-		case 1 -> {
-			return entryDates.get(0).isBefore(selectedDate) ? entryDates.get(0) : selectedDate;
-		}
-		default -> {
-			LocalDate previousDate = parseForPrevious(selectedDate, entryDates);
-			if (previousDate != null) {
-				return previousDate;
-			}
-		}
-		}
+		LocalDate previousDate = toDate(journal.getDateIndex().lower((int) selectedDate.toEpochDay()));
 		// fallback is same date
-		return selectedDate;
+		return previousDate == null ? selectedDate : previousDate;
 	}
 
 	/**
@@ -216,7 +396,28 @@ public class JournalManager {
 	 * @return boolean true if the date is found
 	 */
 	public static boolean hasDate(LocalDate date) {
-		return getEntryDates().contains(date);
+		return journal.getDateIndex().contains((int) date.toEpochDay());
+	}
+
+	/**
+	 * Decrypts the entry for the provided key from the provided journal.
+	 *
+	 * @param current {@link Journal}
+	 * @param key     {@link String}
+	 * @return {@link Optional} of the entry's text, empty if there's no entry
+	 * @throws JournalException
+	 */
+	private static Optional<String> loadEntry(Journal current, String key) throws JournalException {
+		try {
+			return Optional.ofNullable(current.loadEntry(key));
+		} catch (IllegalArgumentException e) {
+			throw new JournalException("Error: " + e.getMessage(), e);
+		} catch (UncheckedIOException e) {
+			throw new JournalException(e.getMessage(), e.getCause());
+		} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException | IllegalBlockSizeException
+				| BadPaddingException | InvalidAlgorithmParameterException | InvalidKeySpecException e) {
+			throw new JournalException("Error fetching journal entry.", e);
+		}
 	}
 
 	/**
@@ -243,78 +444,184 @@ public class JournalManager {
 
 	/**
 	 * Opens an existing journal at the specified file path and using the provided
-	 * password.
+	 * password. Its search index is read in the background, unless it's kept in
+	 * shards.
 	 *
 	 * @param path     {@link String}
 	 * @param password {@link String}
 	 * @throws IOException      if the file is not found
-	 * @throws JournalException if the password is incorrect
+	 * @throws JournalException if the password is incorrect or the key cannot be
+	 *                          derived
 	 */
 	public static void openJournal(String path, String password) throws IOException, JournalException {
-		File file = new File(path);
-		if (!file.exists()) {
-			throw new IOException("File not found: " + file.getAbsolutePath());
-		}
-		if (!file.canWrite()) {
-			throw new IOException("File is read-only: " + file.getAbsolutePath());
-		}
-		journal = new Journal(file, password);
+		File file = checkFile(path);
+		setJournal(configure(new Journal(file, password)));
 		if (!journal.testPassword()) {
 			throw new JournalException("Incorrect password.");
 		}
+		readIndex(journal);
 	}
 
 	/**
-	 * Parse over entryDates. If selectedDate is before the first entryDate, return
-	 * the entryDate. Else if there's a following entryDate, and the selectedDate is
-	 * either equal to that second entryDate, or between the two entryDates, return
-	 * the second entryDate.
+	 * Opens an existing journal on the journal's opener thread, so a large one
+	 * doesn't hold up the caller. The entry for the provided date is read first,
+	 * usually before the rest of the file has been, and handed over as soon as
+	 * it's decrypted, which also proves the password correct. Once the journal is
+	 * loaded it's saved on the writer thread, in case it has to be converted, and
+	 * only then replaces the current journal. Its search index is read in the
+	 * background, unless it's kept in shards.
 	 *
-	 * @param selectedDate {@link LocalDate}
-	 * @param entryDates   {@link List} of {@link LocalDate}
-	 * @return {@link LocalDate} may be null
-	 */
-	private static LocalDate parseForNext(LocalDate selectedDate, List<LocalDate> entryDates) {
-		for (int i = 0; i < entryDates.size(); i++) {
-			LocalDate entryDate1 = entryDates.get(i);
-			if (selectedDate.isBefore(entryDate1)) {
-				return entryDate1;
-			}
-			if ((i + 1) < entryDates.size()) {
-				LocalDate entryDate2 = entryDates.get(i + 1);
-				if (entryDate1.isBefore(selectedDate) && entryDate2.isAfter(selectedDate)) {
-					return entryDate2; // next entry
+	 * @param file     {@link org.gnome.gio.File}
+	 * @param password {@link String}
+	 * @param date     {@link LocalDate} of the entry to read first
+	 * @param unlocked {@link Consumer} told, on a background thread, the
+	 *                 {@link Optional} text of the entry for the date, empty if
+	 *                 there's none, once the password is known to be correct
+	 * @param progress {@link DoubleConsumer} told, on a background thread, the
+	 *                 fraction of the work done so far
+	 * @return {@link CompletableFuture} completed, on the opener thread, once the
+	 *         journal is open or exceptionally with a {@link JournalException},
+	 *         e.g. if the password is incorrect
+	 */
+	public static CompletableFuture<Void> openJournalAsync(org.gnome.gio.File file, String password, LocalDate date,
+			Consumer<Optional<String>> unlocked, DoubleConsumer progress) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Filename pathName = file == null ? null : file.getPath();
+		if (pathName == null) {
+			future.completeExceptionally(new JournalException("Error: journal filename was null."));
+			return future;
+		}
+		String path = pathName.toString();
+		opener.execute(() -> {
+			try {
+				String key = date.format(dateFormatter);
+				AtomicReference<String> first = new AtomicReference<>();
+				Journal opened = new Journal(checkFile(path), password, key, text -> {
+					first.set(text);
+					unlocked.accept(Optional.of(text));
+				}, fraction -> progress.accept(fraction / 2));
+				if (!opened.testPassword()) {
+					throw new JournalException("Incorrect password.");
+				}
+				configure(opened);
+				if (first.get() == null) {
+					unlocked.accept(loadEntry(opened, key));
+				} else {
+					opened.getCache().put(key, first.get().getBytes(StandardCharsets.UTF_8));
 				}
+				try {
+					writer.submit(opened, fraction -> progress.accept(0.5 + fraction / 2)).join();
+				} catch (CompletionException e) {
+					throw e.getCause() instanceof JournalException cause ? cause
+							: new JournalException(e.getCause().getMessage(), e.getCause());
+				}
+				setJournal(opened);
+				progress.accept(1);
+				readIndex(opened);
+				future.complete(null);
+			} catch (IOException e) {
+				future.completeExceptionally(new JournalException(e.getMessage(), e));
+			} catch (JournalException | RuntimeException e) {
+				future.completeExceptionally(e);
 			}
-		}
-		return null;
+		});
+		return future;
 	}
 
 	/**
-	 * Parse over entryDates backwards. If selectedDate is after the last entryDate,
-	 * return the entryDate. Else, if there's a following (prior) entryDate, and the
-	 * selectedDate is after that second entryDate, or between the two entryDates,
-	 * return the first entryDate.
+	 * Decrypts the entries around the provided date into the entry cache on a
+	 * background thread, so they're ready when navigated to: the other entries of
+	 * its month, then the previous entry and last the next one, so that the
+	 * neighbours are the last to be evicted. Any prefetch in progress is
+	 * cancelled first. Stops once the cache is full.
 	 *
-	 * @param selectedDate {@link LocalDate}
-	 * @param entryDates   {@link List} of {@link LocalDate}
-	 * @return {@link LocalDate} may be null
-	 */
-	private static LocalDate parseForPrevious(LocalDate selectedDate, List<LocalDate> entryDates) {
-		for (int i = entryDates.size() - 1; i >= 0; i--) {
-			LocalDate entryDate1 = entryDates.get(i);
-			if (selectedDate.isAfter(entryDate1)) {
-				return entryDate1;
+	 * @param date {@link LocalDate}
+	 */
+	public static synchronized void prefetch(LocalDate date) {
+		cancelPrefetch();
+		Journal current = journal;
+		DateIndex index = current.getDateIndex();
+		Set<String> keys = new LinkedHashSet<>();
+		int days = index.getMonth(date.getYear(), date.getMonthValue());
+		for (int day = 1; days != 0; day++, days >>>= 1) {
+			if ((days & 1) != 0 && day != date.getDayOfMonth()) {
+				keys.add(date.withDayOfMonth(day).format(dateFormatter));
+			}
+		}
+		for (long day : new long[] { index.lower((int) date.toEpochDay()), index.higher((int) date.toEpochDay()) }) {
+			if (day != DateIndex.NONE) {
+				String key = LocalDate.ofEpochDay(day).format(dateFormatter);
+				keys.remove(key);
+				keys.add(key);
 			}
-			if ((i - 1) >= 0) {
-				LocalDate entryDate2 = entryDates.get(i - 1);
-				if (selectedDate.isAfter(entryDate2)
-						|| (entryDate2.isBefore(selectedDate) && entryDate1.isAfter(selectedDate))) {
-					return entryDate2; // previous entry
+		}
+		prefetch = prefetcher.submit(() -> {
+			for (String key : keys) {
+				if (Thread.currentThread().isInterrupted() || current.getCache().isFull()) {
+					return;
+				}
+				if (!current.isCached(key)) {
+					try {
+						current.loadEntry(key);
+					} catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchPaddingException
+							| IllegalBlockSizeException | BadPaddingException | InvalidAlgorithmParameterException
+							| InvalidKeySpecException | IllegalArgumentException | UncheckedIOException _) {
+						// reported if the entry is displayed
+					}
 				}
 			}
+		});
+	}
+
+	/**
+	 * Reads every entry in date order, for operations on the whole journal. Entries
+	 * are decrypted in parallel, a bounded number ahead of the one being read, and
+	 * passed to the consumer on the calling thread. The entries are those in the
+	 * journal when this is called.
+	 *
+	 * @param consumer {@link BiConsumer} given each {@link LocalDate} and the text
+	 *                 of its entry
+	 * @throws JournalException if an entry can't be decrypted or the calling thread
+	 *                          is interrupted
+	 */
+	public static void readEntries(BiConsumer<LocalDate, String> consumer) throws JournalException {
+		journal.readEntries((_, _) -> true, (key, _, decrypted) -> {
+			if (decrypted == null) {
+				throw new JournalException("Error fetching journal entry for " + key + ".");
+			}
+			consumer.accept(LocalDate.parse(key), new String(decrypted, StandardCharsets.UTF_8));
+		});
+	}
+
+	/**
+	 * Reads the search index of the provided journal on the search thread, so the
+	 * first search needn't wait for it. Not for a journal kept in shards, as
+	 * bringing the index up to date reads every entry and so every shard; its
+	 * index is read at the first search instead.
+	 *
+	 * @param opened {@link Journal}
+	 */
+	private static void readIndex(Journal opened) {
+		if (!opened.isSharded()) {
+			searcher.execute(opened::getIndex);
 		}
-		return null;
+	}
+
+	/**
+	 * Adds an entry to the journal and saves the journal to file, on the journal's
+	 * writer thread. Saves requested while another is being written are written
+	 * together. The entry goes to the journal open now, even if another is opened
+	 * before it's written.
+	 *
+	 * @param date     {@link LocalDate}
+	 * @param text     {@link String} the text of the entry, to be encrypted
+	 * @param progress {@link DoubleConsumer} told, on the writer thread, the
+	 *                 fraction of bytes written so far
+	 * @return {@link CompletableFuture} completed, on the writer thread, once the
+	 *         entry is saved or exceptionally with a {@link JournalException}
+	 */
+	public static CompletableFuture<Void> save(LocalDate date, String text, DoubleConsumer progress) {
+		return writer.submit(journal, date, text, progress);
 	}
 
 	/**
@@ -323,13 +630,184 @@ public class JournalManager {
 	 * @throws JournalException
 	 */
 	public static void saveJournal() throws JournalException {
+		saveJournal(_ -> {
+		});
+	}
+
+	/**
+	 * Save the journal to file, reporting progress.
+	 *
+	 * @param progress {@link DoubleConsumer} told the fraction of bytes written so
+	 *                 far
+	 * @throws JournalException
+	 */
+	public static void saveJournal(DoubleConsumer progress) throws JournalException {
+		saveJournal(journal, progress);
+	}
+
+	/**
+	 * Save the provided journal to file, reporting progress.
+	 *
+	 * @param target   {@link Journal}
+	 * @param progress {@link DoubleConsumer} told the fraction of bytes written so
+	 *                 far
+	 * @throws JournalException
+	 */
+	static void saveJournal(Journal target, DoubleConsumer progress) throws JournalException {
 		try {
-			journal.save();
+			target.save(progress);
 		} catch (IOException e) {
 			throw new JournalException("Error saving journal.", e);
 		}
 	}
 
+	/**
+	 * Finds the dates whose entries contain every word of the provided query, each
+	 * as a prefix of a word, on the journal's search thread.
+	 *
+	 * @param query {@link String}
+	 * @return {@link CompletableFuture} completed with a {@link List} of
+	 *         {@link LocalDate} in ascending order
+	 */
+	public static CompletableFuture<List<LocalDate>> search(String query) {
+		Journal current = journal;
+		return CompletableFuture.supplyAsync(() -> {
+			int[] days = current.search(query);
+			List<LocalDate> dates = new ArrayList<>(days.length);
+			for (int day : days) {
+				dates.add(LocalDate.ofEpochDay(day));
+			}
+			return dates;
+		}, searcher);
+	}
+
+	/**
+	 * Sets the number of previous versions of the journal file to keep as
+	 * backups.
+	 *
+	 * @param count int
+	 */
+	public static void setBackups(int count) {
+		backups = count;
+		if (journal != null) {
+			journal.setBackups(count);
+		}
+	}
+
+	/**
+	 * Sets the maximum number of bytes of decrypted entries to cache.
+	 *
+	 * @param budget long
+	 */
+	public static void setCacheBudget(long budget) {
+		cacheBudget = budget;
+		if (journal != null) {
+			journal.setCacheBudget(budget);
+		}
+	}
+
+	/**
+	 * Sets whether journals are written in the compact binary format rather than
+	 * as Properties files. An open journal in the other format is converted the
+	 * next time it's saved.
+	 *
+	 * @param enabled boolean
+	 */
+	public static void setCompact(boolean enabled) {
+		compact = enabled;
+		if (journal != null) {
+			journal.setCompact(enabled);
+		}
+	}
+
+	/**
+	 * Sets whether entries are compressed before they're encrypted. Entries saved
+	 * before keep their form until they're saved again.
+	 *
+	 * @param enabled boolean
+	 */
+	public static void setCompress(boolean enabled) {
+		compress = enabled;
+		if (journal != null) {
+			journal.setCompress(enabled);
+		}
+	}
+
+	/**
+	 * Sets whether journals are kept in a shard per year, with the journal file as
+	 * their manifest, rather than in one file. An open journal kept the other way
+	 * is converted the next time it's saved.
+	 *
+	 * @param enabled boolean
+	 */
+	public static void setSharded(boolean enabled) {
+		sharded = enabled;
+		if (journal != null) {
+			journal.setSharded(enabled);
+		}
+	}
+
+	/**
+	 * Replaces the current journal with the provided one, wiping the current
+	 * journal's cached entries.
+	 *
+	 * @param newJournal {@link Journal} with the settings applied by
+	 *                   {@link #configure(Journal)}
+	 */
+	private static void setJournal(Journal newJournal) {
+		cancelPrefetch();
+		cancelVerification();
+		if (journal != null) {
+			journal.clearCache();
+		}
+		journal = newJournal;
+	}
+
+	/**
+	 * Converts a day from the {@link DateIndex} to a date.
+	 *
+	 * @param day long
+	 * @return {@link LocalDate} null if the day is {@link DateIndex#NONE}
+	 */
+	private static LocalDate toDate(long day) {
+		return day == DateIndex.NONE ? null : LocalDate.ofEpochDay(day);
+	}
+
+	/**
+	 * Decrypts every entry on a background thread, in parallel, to find those
+	 * that can't be, i.e. whose authentication tag doesn't match because they were
+	 * corrupted or tampered with. Nothing is cached; the entries are only checked.
+	 * Any verification in progress is cancelled first.
+	 *
+	 * @return {@link CompletableFuture} completed, on that thread, with the
+	 *         {@link List} of {@link LocalDate} of the corrupt entries in date
+	 *         order or exceptionally with a {@link JournalException}; not completed
+	 *         if cancelled or another journal was opened meanwhile
+	 */
+	public static synchronized CompletableFuture<List<LocalDate>> verifyJournal() {
+		cancelVerification();
+		Journal current = journal;
+		CompletableFuture<List<LocalDate>> future = new CompletableFuture<>();
+		verification = verifier.submit(() -> {
+			List<LocalDate> corrupt = new ArrayList<>();
+			try {
+				current.readEntries((_, _) -> true, (key, _, decrypted) -> {
+					if (decrypted == null) {
+						corrupt.add(LocalDate.parse(key));
+					}
+				});
+				if (journal == current) {
+					future.complete(corrupt);
+				}
+			} catch (JournalException | RuntimeException e) {
+				if (journal == current && !Thread.currentThread().isInterrupted()) {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		return future;
+	}
+
 	/**
 	 * Constructor, hidden because all methods are static.
 	 */
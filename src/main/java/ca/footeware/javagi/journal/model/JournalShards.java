@@ -0,0 +1,563 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.DoubleConsumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * The entries of a journal kept in shards, one per year, each a
+ * {@link JournalContainer} file. The journal file itself is a small manifest
+ * of the days with entries in each year, so the dates of every entry are known
+ * without reading a shard:
+ *
+ * <pre>
+ * "JRNS", version int, salt length short, salt, generation int
+ * shard count int
+ * for each shard: year int, entry count int, days int (counted from the epoch)
+ * CRC32 int of all the above
+ * </pre>
+ *
+ * The shards are in a folder beside the manifest, named like it with a
+ * {@code .shards} suffix, in a subfolder for their generation, e.g.
+ * {@code journal.txt.shards/1/2025}. A shard is mapped into memory the first
+ * time one of its entries is got. Entries put or removed after opening are
+ * kept in memory, over those of the shards, and only the shards of the years
+ * they're in are written again. A journal written in full, e.g. with a new
+ * password, gets a new generation, swapped in with the manifest, so an
+ * interrupted write leaves the previous one intact.
+ */
+class JournalShards extends AbstractMap<String, String> implements RawEntries {
+
+	/**
+	 * An entry of a shard, whose value is read when it's got.
+	 */
+	private final class ShardEntry implements Map.Entry<String, String> {
+
+		private int day;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param day int counted from the epoch
+		 */
+		private ShardEntry(int day) {
+			this.day = day;
+		}
+
+		@Override
+		public String getKey() {
+			return LocalDate.ofEpochDay(day).toString();
+		}
+
+		@Override
+		public String getValue() {
+			return shard(LocalDate.ofEpochDay(day).getYear()).get(getKey());
+		}
+
+		@Override
+		public String setValue(String value) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private static final String FOLDER = ".shards";
+	private static final byte[] MAGIC = { 'J', 'R', 'N', 'S' };
+	private static final int VERSION = 1;
+
+	/**
+	 * Deletes the shards of the provided manifest, e.g. once the journal has been
+	 * written in another format over it.
+	 *
+	 * @param manifest {@link Path}
+	 * @throws IOException
+	 */
+	static void delete(Path manifest) throws IOException {
+		deleteFolder(folder(manifest));
+	}
+
+	/**
+	 * Deletes the provided folder and everything in it, if it exists.
+	 *
+	 * @param folder {@link Path}
+	 * @throws IOException
+	 */
+	private static void deleteFolder(Path folder) throws IOException {
+		if (Files.isDirectory(folder)) {
+			try (Stream<Path> files = Files.walk(folder)) {
+				for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the folder of the provided manifest's shards.
+	 *
+	 * @param manifest {@link Path}
+	 * @return {@link Path}
+	 */
+	private static Path folder(Path manifest) {
+		return manifest.resolveSibling(manifest.getFileName() + FOLDER);
+	}
+
+	/**
+	 * Determines if the provided file is a manifest of shards.
+	 *
+	 * @param path {@link Path}
+	 * @return boolean
+	 * @throws IOException
+	 */
+	static boolean isManifest(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// read until full or at the end of the file
+			}
+			return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+		}
+	}
+
+	/**
+	 * Opens the provided manifest. No shard is read until one of its entries is.
+	 *
+	 * @param manifest {@link Path}
+	 * @return {@link JournalShards}
+	 * @throws IOException if the manifest cannot be read or isn't valid
+	 */
+	static JournalShards open(Path manifest) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(manifest));
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("Error: not a journal manifest.");
+			}
+			if (buffer.getInt() != VERSION) {
+				throw new IOException("Error: unsupported journal manifest version.");
+			}
+			byte[] salt = new byte[buffer.getShort()];
+			buffer.get(salt);
+			int generation = buffer.getInt();
+			int count = buffer.getInt();
+			TreeMap<Integer, int[]> years = new TreeMap<>();
+			for (int i = 0; i < count; i++) {
+				int year = buffer.getInt();
+				int entries = buffer.getInt();
+				if (entries < 0 || entries > buffer.remaining() / 4) {
+					throw new IOException("Error: corrupt journal manifest.");
+				}
+				int[] days = new int[entries];
+				for (int j = 0; j < entries; j++) {
+					days[j] = buffer.getInt();
+					if ((j > 0 && days[j] <= days[j - 1]) || LocalDate.ofEpochDay(days[j]).getYear() != year) {
+						throw new IOException("Error: corrupt journal manifest.");
+					}
+				}
+				years.put(year, days);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(buffer.array(), 0, buffer.position());
+			if (buffer.getInt() != (int) crc.getValue()) {
+				throw new IOException("Error: corrupt journal manifest.");
+			}
+			return new JournalShards(folder(manifest).resolve(Integer.toString(generation)), salt, generation,
+					years);
+		} catch (RuntimeException e) {
+			// a truncated manifest
+			throw new IOException("Error: corrupt journal manifest.", e);
+		}
+	}
+
+	/**
+	 * Converts a date key to its day counted from the epoch.
+	 *
+	 * @param key {@link Object}
+	 * @return long the day or {@link Long#MIN_VALUE} if the key isn't a date
+	 */
+	private static long toDay(Object key) {
+		if (key instanceof String date) {
+			try {
+				return LocalDate.parse(date).toEpochDay();
+			} catch (DateTimeException _) {
+				// not a key of the journal
+			}
+		}
+		return Long.MIN_VALUE;
+	}
+
+	/**
+	 * Writes the provided entries as shards and a manifest over the provided
+	 * file. If the entries are those of shards opened from it, under the same
+	 * salt, only the shards of years with changes are written, in the current
+	 * generation. Otherwise every shard is written, in a new generation that
+	 * replaces the others once the manifest is written.
+	 *
+	 * @param manifest {@link Path}
+	 * @param entries  {@link Map} of keys to encrypted values, in Base64, in key
+	 *                 order
+	 * @param salt     byte array
+	 * @param backups  int number of previous versions of each shard to keep
+	 * @param progress {@link DoubleConsumer} told the fraction of the shards
+	 *                 written so far
+	 * @return int the number of bytes written
+	 * @throws IOException
+	 */
+	static int write(Path manifest, Map<String, String> entries, byte[] salt, int backups, DoubleConsumer progress)
+			throws IOException {
+		JournalShards current = entries instanceof JournalShards shards && Arrays.equals(shards.salt, salt) ? shards
+				: null;
+		int generation = current == null ? nextGeneration(manifest) : current.generation;
+		Path folder = folder(manifest).resolve(Integer.toString(generation));
+		if (current == null) {
+			// left by an interrupted write
+			deleteFolder(folder);
+		}
+		Files.createDirectories(folder);
+
+		// the days of every year, from the keys, and the values of the years written
+		TreeMap<Integer, List<Integer>> days = new TreeMap<>();
+		Set<Integer> changed = current == null ? null : current.getChangedYears();
+		Map<Integer, Map<String, String>> written = new TreeMap<>();
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			LocalDate date = LocalDate.parse(entry.getKey());
+			int year = date.getYear();
+			days.computeIfAbsent(year, _ -> new ArrayList<>()).add((int) date.toEpochDay());
+			if (changed == null || changed.contains(year)) {
+				written.computeIfAbsent(year, _ -> new TreeMap<>()).put(entry.getKey(), entry.getValue());
+			}
+		}
+		if (changed != null) {
+			// years left without entries
+			changed.forEach(year -> written.putIfAbsent(year, Map.of()));
+		}
+
+		int size = 0;
+		int done = 0;
+		for (Map.Entry<Integer, Map<String, String>> shard : written.entrySet()) {
+			Path path = folder.resolve(shard.getKey().toString());
+			if (shard.getValue().isEmpty()) {
+				Files.deleteIfExists(path);
+			} else {
+				byte[] bytes = JournalContainer.toBytes(shard.getValue(), salt);
+				AtomicWriter.write(path, ByteBuffer.wrap(bytes), current == null ? 0 : backups, _ -> {
+				});
+				size += bytes.length;
+			}
+			progress.accept(0.9 * ++done / written.size());
+		}
+
+		int length = MAGIC.length + 4 + 2 + salt.length + 4 + 4 + 4;
+		for (List<Integer> year : days.values()) {
+			length += 8 + 4 * year.size();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.put(MAGIC).putInt(VERSION).putShort((short) salt.length).put(salt).putInt(generation)
+				.putInt(days.size());
+		days.forEach((year, yearDays) -> {
+			buffer.putInt(year).putInt(yearDays.size());
+			yearDays.forEach(buffer::putInt);
+		});
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		buffer.putInt((int) crc.getValue());
+		buffer.flip();
+		AtomicWriter.write(manifest, buffer, 0, fraction -> progress.accept(0.9 + 0.1 * fraction));
+
+		if (current == null) {
+			try (DirectoryStream<Path> generations = Files.newDirectoryStream(folder(manifest))) {
+				for (Path other : generations) {
+					if (!other.equals(folder)) {
+						deleteFolder(other);
+					}
+				}
+			}
+		}
+		return size + length;
+	}
+
+	/**
+	 * Gets a generation for a full write of the provided manifest's shards, one
+	 * more than the latest.
+	 *
+	 * @param manifest {@link Path}
+	 * @return int
+	 * @throws IOException
+	 */
+	private static int nextGeneration(Path manifest) throws IOException {
+		int latest = 0;
+		Path folder = folder(manifest);
+		if (Files.isDirectory(folder)) {
+			try (DirectoryStream<Path> generations = Files.newDirectoryStream(folder)) {
+				for (Path generation : generations) {
+					try {
+						latest = Math.max(latest, Integer.parseInt(generation.getFileName().toString()));
+					} catch (NumberFormatException _) {
+						// not a generation
+					}
+				}
+			}
+		}
+		return latest + 1;
+	}
+
+	private TreeMap<String, String> changes;
+	private Path folder;
+	private int generation;
+	private byte[] salt;
+	private Map<Integer, JournalContainer> shards;
+	private int size;
+	private TreeMap<Integer, int[]> years;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param folder     {@link Path} of the generation's shards
+	 * @param salt       byte array
+	 * @param generation int
+	 * @param years      {@link TreeMap} of each year to its days with entries,
+	 *                   ascending
+	 */
+	private JournalShards(Path folder, byte[] salt, int generation, TreeMap<Integer, int[]> years) {
+		this.folder = folder;
+		this.salt = salt;
+		this.generation = generation;
+		this.years = years;
+		this.changes = new TreeMap<>();
+		this.shards = new HashMap<>();
+		for (int[] days : years.values()) {
+			this.size += days.length;
+		}
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (changes.containsKey(key)) {
+			return changes.get(key) != null;
+		}
+		return inShard(key);
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<>() {
+
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new Iterator<>() {
+
+					private Iterator<Map.Entry<String, String>> changed = changes.entrySet().iterator();
+					private Map.Entry<String, String> change = nextChange();
+					private int i;
+					private int[] days = new int[0];
+					private Iterator<int[]> yearDays = years.values().iterator();
+					private Map.Entry<String, String> next = advance();
+
+					/**
+					 * Finds the next entry, in key order, from the shards or the changes,
+					 * the latter replacing the former. Only the manifest is read.
+					 *
+					 * @return {@link Map.Entry} null if there are none left
+					 */
+					private Map.Entry<String, String> advance() {
+						while (true) {
+							while (i == days.length && yearDays.hasNext()) {
+								days = yearDays.next();
+								i = 0;
+							}
+							if (i == days.length && change == null) {
+								return null;
+							}
+							String key = i < days.length ? LocalDate.ofEpochDay(days[i]).toString() : null;
+							int order = key == null ? 1 : change == null ? -1 : key.compareTo(change.getKey());
+							Map.Entry<String, String> entry;
+							if (order < 0) {
+								entry = new ShardEntry(days[i++]);
+							} else {
+								if (order == 0) {
+									i++;
+								}
+								entry = change;
+								change = nextChange();
+							}
+							if (entry instanceof ShardEntry || entry.getValue() != null) {
+								return entry;
+							}
+						}
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next != null;
+					}
+
+					@Override
+					public Map.Entry<String, String> next() {
+						if (next == null) {
+							throw new NoSuchElementException();
+						}
+						Map.Entry<String, String> current = next;
+						next = advance();
+						return current;
+					}
+
+					/**
+					 * Gets the next change.
+					 *
+					 * @return {@link Map.Entry} null if there are none left
+					 */
+					private Map.Entry<String, String> nextChange() {
+						return changed.hasNext() ? changed.next() : null;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public String get(Object key) {
+		if (changes.containsKey(key)) {
+			return changes.get(key);
+		}
+		return inShard(key) ? shard(LocalDate.parse((String) key).getYear()).get(key) : null;
+	}
+
+	/**
+	 * Gets the encrypted value of an entry as raw bytes: a view of its shard's
+	 * mapped file if the entry hasn't changed since opening.
+	 *
+	 * @param key {@link String}
+	 * @return {@link ByteBuffer} null if there's no entry
+	 */
+	@Override
+	public ByteBuffer getBytes(String key) {
+		if (changes.containsKey(key)) {
+			String value = changes.get(key);
+			return value == null ? null : ByteBuffer.wrap(Base64.getDecoder().decode(value));
+		}
+		return inShard(key) ? shard(LocalDate.parse(key).getYear()).getBytes(key) : null;
+	}
+
+	/**
+	 * Gets the years with entries put or removed since opening.
+	 *
+	 * @return {@link Set} of int
+	 */
+	private Set<Integer> getChangedYears() {
+		Set<Integer> changed = new TreeSet<>();
+		for (String key : changes.keySet()) {
+			changed.add(LocalDate.parse(key).getYear());
+		}
+		return changed;
+	}
+
+	/**
+	 * Gets the salt the journal key is derived with.
+	 *
+	 * @return byte array
+	 */
+	byte[] getSalt() {
+		return salt;
+	}
+
+	/**
+	 * Determines if the manifest lists the provided key.
+	 *
+	 * @param key {@link Object}
+	 * @return boolean
+	 */
+	private boolean inShard(Object key) {
+		long day = toDay(key);
+		if (day == Long.MIN_VALUE) {
+			return false;
+		}
+		int[] days = years.get(LocalDate.ofEpochDay(day).getYear());
+		return days != null && Arrays.binarySearch(days, (int) day) >= 0;
+	}
+
+	/**
+	 * Puts an entry over those of the shards, without reading them.
+	 *
+	 * @return {@link String} always null, so no shard is read for the previous
+	 *         value
+	 */
+	@Override
+	public String put(String key, String value) {
+		if (!containsKey(key)) {
+			size++;
+		}
+		changes.put(key, value);
+		return null;
+	}
+
+	/**
+	 * Removes an entry, without reading the shards.
+	 *
+	 * @return {@link String} always null, so no shard is read for the previous
+	 *         value
+	 */
+	@Override
+	public String remove(Object key) {
+		if (containsKey(key)) {
+			size--;
+			changes.put((String) key, null);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the shard of the provided year, mapping it into memory the first time.
+	 *
+	 * @param year int
+	 * @return {@link JournalContainer}
+	 * @throws UncheckedIOException if the shard cannot be read, isn't valid or was
+	 *                              written with another salt
+	 */
+	private synchronized JournalContainer shard(int year) {
+		return shards.computeIfAbsent(year, _ -> {
+			try {
+				JournalContainer shard = JournalContainer.open(folder.resolve(Integer.toString(year)));
+				if (!Arrays.equals(shard.getSalt(), salt)) {
+					throw new IOException("Error: the shard for " + year + " belongs to another journal.");
+				}
+				return shard;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e.getMessage(), e);
+			}
+		});
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+}
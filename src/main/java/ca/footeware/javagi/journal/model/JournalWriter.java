@@ -0,0 +1,193 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.DoubleConsumer;
+
+/**
+ * The single writer of journal entries. Saves are queued and written by one
+ * long-lived thread. Saves queued while another is being written are coalesced
+ * into one write to disk, and only the latest text queued for a date is added.
+ * Each save is written to the journal it was made in, even if another has been
+ * opened since. A journal's log is folded back into its file on the same
+ * thread, once it's grown enough.
+ */
+class JournalWriter {
+
+	/**
+	 * Saves to be written together, to one journal.
+	 */
+	private static class Batch {
+
+		private Map<LocalDate, Pending> entries = new LinkedHashMap<>();
+		private Journal journal;
+		// waiting for the journal to be saved, without an entry of their own
+		private Pending save = new Pending();
+
+		/**
+		 * Constructor.
+		 *
+		 * @param journal {@link Journal}
+		 */
+		Batch(Journal journal) {
+			this.journal = journal;
+		}
+	}
+
+	/**
+	 * The latest text queued for a date and everyone waiting for it to be saved.
+	 */
+	private static class Pending {
+
+		private List<CompletableFuture<Void>> futures = new ArrayList<>();
+		private List<DoubleConsumer> listeners = new ArrayList<>();
+		private String text;
+	}
+
+	private static final int CAPACITY = 64;
+
+	// saves not yet being written, null if there are none
+	private Batch queue;
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "journal-writer");
+		// closed by JournalManager.close, so saves aren't cut short as the app quits
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Waits for the saves already queued to be written, and accepts no more.
+	 */
+	void close() {
+		worker.close();
+	}
+
+	/**
+	 * Folds the provided journal's log back into its file.
+	 *
+	 * @param journal {@link Journal}
+	 */
+	private static void compact(Journal journal) {
+		try {
+			journal.compact();
+		} catch (IOException e) {
+			e.printStackTrace();
+			// the log is still intact, tried again after the next save
+		}
+	}
+
+	/**
+	 * Gets the batch that saves queued for the provided journal join, starting one
+	 * if need be.
+	 *
+	 * @param journal {@link Journal}
+	 * @param future  {@link CompletableFuture} failed if no batch can be started
+	 * @return {@link Batch} null if the writer is closed
+	 */
+	private Batch enqueue(Journal journal, CompletableFuture<Void> future) {
+		if (queue == null || queue.journal != journal) {
+			Batch batch = new Batch(journal);
+			try {
+				worker.execute(() -> write(batch));
+			} catch (RejectedExecutionException e) {
+				future.completeExceptionally(new JournalException("Error: the journal is closed.", e));
+				return null;
+			}
+			queue = batch;
+		}
+		return queue;
+	}
+
+	/**
+	 * Queues the provided journal to be saved, e.g. to convert it, with any
+	 * entries queued for it.
+	 *
+	 * @param journal  {@link Journal}
+	 * @param progress {@link DoubleConsumer} told the fraction of bytes written so
+	 *                 far
+	 * @return {@link CompletableFuture} completed once the journal is saved
+	 */
+	synchronized CompletableFuture<Void> submit(Journal journal, DoubleConsumer progress) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Batch batch = enqueue(journal, future);
+		if (batch != null) {
+			batch.save.futures.add(future);
+			batch.save.listeners.add(progress);
+		}
+		return future;
+	}
+
+	/**
+	 * Queues the provided entry to be added to the provided journal and saved.
+	 *
+	 * @param journal  {@link Journal}
+	 * @param date     {@link LocalDate}
+	 * @param text     {@link String}
+	 * @param progress {@link DoubleConsumer} told the fraction of bytes written so
+	 *                 far
+	 * @return {@link CompletableFuture} completed once the entry is on disk
+	 */
+	synchronized CompletableFuture<Void> submit(Journal journal, LocalDate date, String text,
+			DoubleConsumer progress) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Batch batch = enqueue(journal, future);
+		if (batch == null) {
+			return future;
+		}
+		Pending pending = batch.entries.get(date);
+		if (pending == null) {
+			if (batch.entries.size() >= CAPACITY) {
+				future.completeExceptionally(new JournalException("Error: too many saves pending."));
+				return future;
+			}
+			pending = new Pending();
+			batch.entries.put(date, pending);
+		}
+		pending.text = text;
+		pending.futures.add(future);
+		pending.listeners.add(progress);
+		return future;
+	}
+
+	/**
+	 * Adds the batch's entries, if any, to its journal and saves it once.
+	 *
+	 * @param batch {@link Batch}
+	 */
+	private void write(Batch batch) {
+		synchronized (this) {
+			if (queue == batch) {
+				// saves queued from now on are written next
+				queue = null;
+			}
+		}
+		List<Pending> pendings = new ArrayList<>(batch.entries.values());
+		pendings.add(batch.save);
+		try {
+			for (Map.Entry<LocalDate, Pending> entry : batch.entries.entrySet()) {
+				JournalManager.addEntry(batch.journal, entry.getKey(), entry.getValue().text);
+			}
+			JournalManager.saveJournal(batch.journal, fraction -> pendings
+					.forEach(pending -> pending.listeners.forEach(listener -> listener.accept(fraction))));
+			pendings.forEach(pending -> pending.futures.forEach(future -> future.complete(null)));
+			if (batch.journal.needsCompaction()) {
+				try {
+					// after the saves already queued
+					worker.execute(() -> compact(batch.journal));
+				} catch (RejectedExecutionException _) {
+					// closing; the log is replayed when the journal is next opened
+				}
+			}
+		} catch (JournalException | RuntimeException e) {
+			pendings.forEach(pending -> pending.futures.forEach(future -> future.completeExceptionally(e)));
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package ca.footeware.javagi.journal.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the derivation of a key from a password.
+ */
+@Name("ca.footeware.javagi.journal.KeyDerivation")
+@Label("Key Derivation")
+@Category({ "Journal", "Crypto" })
+@Description("A key is derived from a password and salt.")
+@StackTrace(false)
+public final class KeyDerivationEvent extends Event {
+
+	@Label("Iterations")
+	int iterations;
+}
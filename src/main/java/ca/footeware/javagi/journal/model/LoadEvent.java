@@ -0,0 +1,33 @@
+package ca.footeware.javagi.journal.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for the loading of a {@link Journal}, from reading
+ * its file and log to deriving its key.
+ */
+@Name("ca.footeware.javagi.journal.Load")
+@Label("Journal Load")
+@Category("Journal")
+@Description("A journal is loaded from its file.")
+@StackTrace(false)
+public final class LoadEvent extends Event {
+
+	@Label("Compact")
+	@Description("Whether the file is in the compact format.")
+	boolean compact;
+
+	@Label("Entries")
+	int entries;
+
+	@Label("Size")
+	@Description("The size of the journal file.")
+	@DataAmount
+	long size;
+}
@@ -0,0 +1,20 @@
+package ca.footeware.javagi.journal.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Entries stored as raw encrypted bytes, as in the compact format, whose values
+ * can be got for decrypting without encoding them in Base64 only for them to be
+ * decoded again.
+ */
+interface RawEntries {
+
+	/**
+	 * Gets the encrypted value of an entry as raw bytes.
+	 *
+	 * @param key {@link String}
+	 * @return {@link ByteBuffer} of the encrypted entry, not to be written to;
+	 *         null if there's no entry
+	 */
+	ByteBuffer getBytes(String key);
+}
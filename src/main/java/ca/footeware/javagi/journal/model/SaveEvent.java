@@ -0,0 +1,33 @@
+package ca.footeware.javagi.journal.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event for {@link Journal#save(java.util.function.DoubleConsumer)}.
+ */
+@Name("ca.footeware.javagi.journal.Save")
+@Label("Journal Save")
+@Category("Journal")
+@Description("A journal is saved, by appending its changes to the log or writing it in full.")
+@StackTrace(false)
+public final class SaveEvent extends Event {
+
+	@Label("Entries")
+	@Description("The number of entries written.")
+	int entries;
+
+	@Label("Full")
+	@Description("Whether the journal file was written in full rather than appended to the log.")
+	boolean full;
+
+	@Label("Size")
+	@Description("The number of bytes written.")
+	@DataAmount
+	long size;
+}
@@ -0,0 +1,450 @@
+package ca.footeware.javagi.journal.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An inverted index of the words in journal entries to the days, counted from
+ * the epoch, of the entries they appear in. Each indexed day remembers the GCM
+ * tag of the encrypted entry it was indexed from, so an index read back from
+ * disk can tell which entries changed since it was written, and its words, so
+ * it can be removed without visiting every word. The days of each word are
+ * written as the first day followed by the gaps between days, each in as few
+ * bytes as it needs.
+ * <p>
+ * Words are runs of letters and digits, lower-cased and cut to
+ * {@value #MAX_WORD} characters. A search matches entries with every word of
+ * the query, each as a prefix of a word in the entry.
+ */
+class SearchIndex {
+
+	/**
+	 * The sorted days a word appears in.
+	 */
+	private static class Postings {
+
+		private int[] days = new int[4];
+		private int size;
+
+		/**
+		 * Adds the provided day, if not already present.
+		 *
+		 * @param day int
+		 */
+		void add(int day) {
+			int index = Arrays.binarySearch(days, 0, size, day);
+			if (index >= 0) {
+				return;
+			}
+			int insertion = -(index + 1);
+			if (size == days.length) {
+				days = Arrays.copyOf(days, size * 2);
+			}
+			System.arraycopy(days, insertion, days, insertion + 1, size - insertion);
+			days[insertion] = day;
+			size++;
+		}
+
+		/**
+		 * Appends the provided day, which must be later than those present.
+		 *
+		 * @param day int
+		 */
+		void append(int day) {
+			if (size == days.length) {
+				days = Arrays.copyOf(days, size * 2);
+			}
+			days[size++] = day;
+		}
+
+		/**
+		 * Removes the provided day, if present.
+		 *
+		 * @param day int
+		 */
+		void remove(int day) {
+			int index = Arrays.binarySearch(days, 0, size, day);
+			if (index >= 0) {
+				System.arraycopy(days, index + 1, days, index, size - index - 1);
+				size--;
+			}
+		}
+	}
+
+	private static final int MAX_WORD = 64;
+	private static final int TAG_LENGTH = 16;
+	private static final int VERSION = 2;
+
+	/**
+	 * Reads an index written by {@link #toBytes()}.
+	 *
+	 * @param bytes byte array
+	 * @return {@link SearchIndex}
+	 * @throws IOException if the bytes aren't an index of this version
+	 */
+	static SearchIndex fromBytes(byte[] bytes) throws IOException {
+		SearchIndex index = new SearchIndex();
+		try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (in.readInt() != VERSION) {
+				throw new IOException("Unsupported search index version.");
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				int day = in.readInt();
+				byte[] tag = new byte[in.readUnsignedByte()];
+				in.readFully(tag);
+				index.tags.put(day, tag);
+				index.words.put(day, new ArrayList<>());
+			}
+			count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String word = in.readUTF();
+				Postings days = new Postings();
+				int size = readVarInt(in);
+				int day = 0;
+				for (int j = 0; j < size; j++) {
+					day = j == 0 ? in.readInt() : day + readVarInt(in);
+					List<String> dayWords = index.words.get(day);
+					if (dayWords == null) {
+						throw new IOException("Search index has words of a day it doesn't index.");
+					}
+					dayWords.add(word);
+					days.append(day);
+				}
+				index.postings.put(word, days);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Reads an unsigned int written by {@link #writeVarInt(DataOutputStream, int)}.
+	 *
+	 * @param in {@link DataInputStream}
+	 * @return int
+	 * @throws IOException
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if (b < 0x80) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Gets the GCM authentication tag of the provided encrypted entry, i.e. its
+	 * last {@value #TAG_LENGTH} bytes.
+	 *
+	 * @param encrypted {@link ByteBuffer} of the encrypted entry, left unchanged
+	 * @return byte array
+	 */
+	static byte[] tag(ByteBuffer encrypted) {
+		byte[] tag = new byte[Math.min(TAG_LENGTH, encrypted.remaining())];
+		encrypted.get(encrypted.limit() - tag.length, tag);
+		return tag;
+	}
+
+	/**
+	 * Gets the GCM authentication tag of the provided encrypted entry, i.e. its
+	 * last {@value #TAG_LENGTH} bytes. Every encryption has a fresh IV, so the tag
+	 * changes whenever the entry is saved or re-encrypted.
+	 *
+	 * @param encrypted {@link String} Base64 of the encrypted entry
+	 * @return byte array, empty if the entry isn't valid Base64
+	 */
+	static byte[] tag(String encrypted) {
+		try {
+			// whole groups of four characters, holding at least the tag's bytes
+			byte[] tail = Base64.getDecoder().decode(encrypted.substring(Math.max(0, encrypted.length() - 24)));
+			return Arrays.copyOfRange(tail, Math.max(0, tail.length - TAG_LENGTH), tail.length);
+		} catch (IllegalArgumentException _) {
+			// can't be decrypted, so it's never indexed
+			return new byte[0];
+		}
+	}
+
+	/**
+	 * Splits the provided text into its distinct words, lower-cased.
+	 *
+	 * @param text {@link String}
+	 * @return {@link Set} of {@link String} in order of first appearance
+	 */
+	static Set<String> tokenize(String text) {
+		Set<String> words = new LinkedHashSet<>();
+		int start = -1;
+		for (int i = 0; i < text.length();) {
+			int codePoint = text.codePointAt(i);
+			if (Character.isLetterOrDigit(codePoint)) {
+				if (start < 0) {
+					start = i;
+				}
+			} else if (start >= 0) {
+				words.add(word(text, start, i));
+				start = -1;
+			}
+			i += Character.charCount(codePoint);
+		}
+		if (start >= 0) {
+			words.add(word(text, start, text.length()));
+		}
+		return words;
+	}
+
+	/**
+	 * Gets the word between the provided indices of the text, lower-cased and cut
+	 * to {@link #MAX_WORD} characters.
+	 *
+	 * @param text  {@link String}
+	 * @param start int
+	 * @param end   int
+	 * @return {@link String}
+	 */
+	private static String word(String text, int start, int end) {
+		return text.substring(start, Math.min(end, start + MAX_WORD)).toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Writes an unsigned int in as few bytes as it needs, seven bits at a time.
+	 *
+	 * @param out   {@link DataOutputStream}
+	 * @param value int
+	 * @throws IOException
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte(value & 0x7f | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private int changes;
+	private TreeMap<String, Postings> postings;
+	private TreeMap<Integer, byte[]> tags;
+	private Map<Integer, List<String>> words;
+	private int written;
+
+	/**
+	 * Constructor.
+	 */
+	SearchIndex() {
+		this.postings = new TreeMap<>();
+		this.tags = new TreeMap<>();
+		this.words = new HashMap<>();
+	}
+
+	/**
+	 * Gets the indexed days, in ascending order.
+	 *
+	 * @return int array
+	 */
+	synchronized int[] getDays() {
+		return tags.keySet().stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Gets the number of changes made to the index, to be passed to
+	 * {@link #markWritten(int)} once the bytes {@link #toBytes()} returned at the
+	 * same count are written.
+	 *
+	 * @return int
+	 */
+	synchronized int getChanges() {
+		return changes;
+	}
+
+	/**
+	 * Determines if the index has changed since it was read or last written.
+	 *
+	 * @return boolean
+	 */
+	synchronized boolean isDirty() {
+		return changes != written;
+	}
+
+	/**
+	 * Determines if the provided day is indexed from the provided encrypted entry.
+	 *
+	 * @param day       int
+	 * @param encrypted {@link String} Base64 of the encrypted entry
+	 * @return boolean
+	 */
+	synchronized boolean isCurrent(int day, String encrypted) {
+		return isCurrent(day, tag(encrypted));
+	}
+
+	/**
+	 * Determines if the provided day is indexed from the encrypted entry with the
+	 * provided tag.
+	 *
+	 * @param day int
+	 * @param tag byte array from {@link #tag(ByteBuffer)} or {@link #tag(String)}
+	 * @return boolean
+	 */
+	synchronized boolean isCurrent(int day, byte[] tag) {
+		byte[] indexed = tags.get(day);
+		return indexed != null && Arrays.equals(indexed, tag);
+	}
+
+	/**
+	 * Indexes the provided entry, replacing what was indexed for its day.
+	 *
+	 * @param day       int
+	 * @param encrypted {@link String} Base64 of the encrypted entry
+	 * @param text      {@link String} the decrypted entry
+	 */
+	synchronized void put(int day, String encrypted, String text) {
+		put(day, tag(encrypted), text);
+	}
+
+	/**
+	 * Indexes the provided entry, replacing what was indexed for its day.
+	 *
+	 * @param day  int
+	 * @param tag  byte array from {@link #tag(ByteBuffer)} or {@link #tag(String)}
+	 *             of the encrypted entry
+	 * @param text {@link String} the decrypted entry
+	 */
+	synchronized void put(int day, byte[] tag, String text) {
+		remove(day);
+		List<String> dayWords = new ArrayList<>(tokenize(text));
+		for (String word : dayWords) {
+			postings.computeIfAbsent(word, _ -> new Postings()).add(day);
+		}
+		tags.put(day, tag);
+		words.put(day, dayWords);
+		changes++;
+	}
+
+	/**
+	 * Records that the entry for the provided day was re-encrypted without
+	 * changing, e.g. when migrated.
+	 *
+	 * @param day          int
+	 * @param oldEncrypted {@link String} Base64 of the previous encrypted entry
+	 * @param newEncrypted {@link String} Base64 of the new encrypted entry
+	 */
+	synchronized void rehash(int day, String oldEncrypted, String newEncrypted) {
+		if (isCurrent(day, oldEncrypted)) {
+			tags.put(day, tag(newEncrypted));
+			changes++;
+		}
+	}
+
+	/**
+	 * Records that the index was written as it was after the provided number of
+	 * changes. It's still dirty if it has changed since.
+	 *
+	 * @param count int from {@link #getChanges()}
+	 */
+	synchronized void markWritten(int count) {
+		written = count;
+	}
+
+	/**
+	 * Removes the provided day from the index, if present.
+	 *
+	 * @param day int
+	 */
+	synchronized void remove(int day) {
+		if (tags.remove(day) == null) {
+			return;
+		}
+		for (String word : words.remove(day)) {
+			Postings days = postings.get(word);
+			days.remove(day);
+			if (days.size == 0) {
+				postings.remove(word);
+			}
+		}
+		changes++;
+	}
+
+	/**
+	 * Finds the days whose entries contain every word of the provided query, each
+	 * as a prefix of a word.
+	 *
+	 * @param query {@link String}
+	 * @return int array of days, in ascending order; empty if the query has no
+	 *         words
+	 */
+	synchronized int[] search(String query) {
+		Set<String> prefixes = tokenize(query);
+		if (prefixes.isEmpty() || tags.isEmpty()) {
+			return new int[0];
+		}
+		int base = tags.firstKey();
+		BitSet result = null;
+		for (String prefix : prefixes) {
+			BitSet matches = new BitSet();
+			SortedMap<String, Postings> range = postings.subMap(prefix, prefix + Character.MAX_VALUE);
+			for (Postings days : range.values()) {
+				for (int i = 0; i < days.size; i++) {
+					matches.set(days.days[i] - base);
+				}
+			}
+			if (result == null) {
+				result = matches;
+			} else {
+				result.and(matches);
+			}
+			if (result.isEmpty()) {
+				return new int[0];
+			}
+		}
+		return result.stream().map(bit -> bit + base).toArray();
+	}
+
+	/**
+	 * Writes the index as bytes, to be read by {@link #fromBytes(byte[])}. It
+	 * isn't marked as written; see {@link #markWritten(int)}.
+	 *
+	 * @return byte array
+	 */
+	synchronized byte[] toBytes() {
+		var bytes = new ByteArrayOutputStream();
+		try (var out = new DataOutputStream(bytes)) {
+			out.writeInt(VERSION);
+			out.writeInt(tags.size());
+			for (Map.Entry<Integer, byte[]> entry : tags.entrySet()) {
+				out.writeInt(entry.getKey());
+				out.writeByte(entry.getValue().length);
+				out.write(entry.getValue());
+			}
+			out.writeInt(postings.size());
+			for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+				Postings days = entry.getValue();
+				out.writeUTF(entry.getKey());
+				writeVarInt(out, days.size);
+				out.writeInt(days.days[0]);
+				for (int i = 1; i < days.size; i++) {
+					writeVarInt(out, days.days[i] - days.days[i - 1]);
+				}
+			}
+		} catch (IOException e) {
+			// not thrown by a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+}
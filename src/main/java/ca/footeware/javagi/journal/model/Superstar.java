@@ -1,11 +1,19 @@
 package ca.footeware.javagi.journal.model;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.DrbgParameters.Capability;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -13,15 +21,190 @@ import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.SecretKey;
 import javax.crypto.SecretKeyFactory;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
  * Is it an encryption service or something more sinister?
+ * <p>
+ * Random bytes come from a single DRBG seeded once by the JDK, which never
+ * blocks waiting for entropy. {@link Cipher} and {@link SecretKeyFactory}
+ * instances are looked up once per thread and re-initialized for every call.
+ * <p>
+ * Entries can be compressed with Deflate before they're encrypted. The envelope's
+ * leading byte then has the {@link #COMPRESSED} flag set and is authenticated
+ * along with the entry, and the plaintext is the entry's length followed by the
+ * deflated entry. Entries that don't get smaller are stored as they are.
  */
 public class Superstar {
 
+	private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<>();
+
+	/**
+	 * Flag in the leading byte of entries compressed before they were encrypted.
+	 */
+	private static final byte COMPRESSED = 0x10;
+
+	private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal
+			.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+
+	/**
+	 * Leading byte of entries encrypted with a journal-level key, i.e. without a
+	 * per-entry salt.
+	 */
+	private static final byte ENVELOPE_VERSION = 2;
+
+	private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+	/**
+	 * PBKDF2 iterations when deriving a key from a password.
+	 */
+	private static final int ITERATIONS = 10000;
+
+	private static final int IV_LENGTH = 12;
+
+	/**
+	 * Version byte + IV.
+	 */
+	private static final int HEADER_LENGTH = 1 + IV_LENGTH;
+
+	private static final ThreadLocal<SecretKeyFactory> KEY_FACTORIES = new ThreadLocal<>();
+
+	private static final SecureRandom RANDOM = createRandom();
+
+	private static final int SALT_LENGTH = 16;
+
+	private static final int TAG_LENGTH = 128;
+
+	/**
+	 * Gets this thread's AES/GCM {@link Cipher}, creating it on first use.
+	 *
+	 * @return {@link Cipher}
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 */
+	private static Cipher cipher() throws NoSuchAlgorithmException, NoSuchPaddingException {
+		Cipher cipher = CIPHERS.get();
+		if (cipher == null) {
+			cipher = Cipher.getInstance("AES/GCM/NoPadding");
+			CIPHERS.set(cipher);
+		}
+		return cipher;
+	}
+
+	/**
+	 * Creates the shared random number generator, a DRBG if available.
+	 *
+	 * @return {@link SecureRandom}
+	 */
+	private static SecureRandom createRandom() {
+		try {
+			return SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(256, Capability.NONE, null));
+		} catch (NoSuchAlgorithmException _) {
+			return new SecureRandom();
+		}
+	}
+
+	/**
+	 * Decrypt data using the given key, as produced by
+	 * {@link #encrypt(byte[], SecretKey)}.
+	 *
+	 * @param encryptedData byte array
+	 * @param secretKey     {@link SecretKey}
+	 * @return byte array
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws IllegalArgumentException
+	 */
+	public static byte[] decrypt(byte[] encryptedData, SecretKey secretKey)
+			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, IllegalArgumentException {
+		if (encryptedData.length < HEADER_LENGTH || (encryptedData[0] & ~COMPRESSED) != ENVELOPE_VERSION) {
+			throw new IllegalArgumentException("Error: decryption failed, unknown entry format.");
+		}
+		Cipher cipher = cipher();
+		cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH, encryptedData, 1, IV_LENGTH));
+		if ((encryptedData[0] & COMPRESSED) == 0) {
+			return cipher.doFinal(encryptedData, HEADER_LENGTH, encryptedData.length - HEADER_LENGTH);
+		}
+		cipher.updateAAD(encryptedData, 0, 1);
+		byte[] deflated = cipher.doFinal(encryptedData, HEADER_LENGTH, encryptedData.length - HEADER_LENGTH);
+		try {
+			return inflate(deflated);
+		} finally {
+			Arrays.fill(deflated, (byte) 0);
+		}
+	}
+
+	/**
+	 * Decrypt the remaining bytes of the provided buffer using the given key. The
+	 * buffer's position is left unchanged.
+	 *
+	 * @param encryptedData {@link ByteBuffer}
+	 * @param secretKey     {@link SecretKey}
+	 * @return {@link ByteBuffer} ready to be read
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws IllegalArgumentException
+	 */
+	public static ByteBuffer decrypt(ByteBuffer encryptedData, SecretKey secretKey)
+			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, IllegalArgumentException {
+		ByteBuffer input = encryptedData.duplicate();
+		if (input.remaining() < HEADER_LENGTH || (input.get(input.position()) & ~COMPRESSED) != ENVELOPE_VERSION) {
+			throw new IllegalArgumentException("Error: decryption failed, unknown entry format.");
+		}
+		byte header = input.get();
+		if ((header & COMPRESSED) != 0) {
+			byte[] combined = new byte[encryptedData.remaining()];
+			encryptedData.get(encryptedData.position(), combined);
+			return ByteBuffer.wrap(decrypt(combined, secretKey));
+		}
+		byte[] ivBytes = new byte[IV_LENGTH];
+		input.get(ivBytes);
+		Cipher cipher = cipher();
+		cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH, ivBytes));
+		ByteBuffer output = ByteBuffer.allocate(cipher.getOutputSize(input.remaining()));
+		try {
+			cipher.doFinal(input, output);
+		} catch (ShortBufferException e) {
+			throw new IllegalStateException(e);
+		}
+		return output.flip();
+	}
+
+	/**
+	 * Decrypt data using the given key, as produced by
+	 * {@link #encrypt(String, SecretKey)}.
+	 *
+	 * @param encryptedData {@link String}
+	 * @param secretKey     {@link SecretKey}
+	 * @return {@link String}
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 * @throws IllegalArgumentException
+	 */
+	public static String decrypt(String encryptedData, SecretKey secretKey)
+			throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException,
+			InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, IllegalArgumentException {
+		byte[] decryptedBytes = decrypt(Base64.getDecoder().decode(encryptedData), secretKey);
+		return new String(decryptedBytes, StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * Decrypt data using the given password.
 	 *
@@ -44,31 +227,191 @@ public class Superstar {
 		// Decode the Base64 encoded data
 		byte[] combined = Base64.getDecoder().decode(encryptedData);
 
-		if (combined.length < 28) {
+		if (combined.length < SALT_LENGTH + IV_LENGTH) {
 			throw new IllegalArgumentException("Error: decryption failed, less than 28 bytes.");
 		}
 
 		// Extract salt (first 16 bytes)
-		byte[] salt = new byte[16];
-		System.arraycopy(combined, 0, salt, 0, 16);
-
-		// Extract IV (next 12 bytes)
-		byte[] ivBytes = new byte[12];
-		System.arraycopy(combined, 16, ivBytes, 0, 12);
-
-		// Extract encrypted data (remaining bytes)
-		byte[] encryptedBytes = new byte[combined.length - 28]; // 16 (salt) + 12 (IV) = 28
-		System.arraycopy(combined, 28, encryptedBytes, 0, encryptedBytes.length);
+		byte[] salt = new byte[SALT_LENGTH];
+		System.arraycopy(combined, 0, salt, 0, SALT_LENGTH);
 
 		// Generate the same key using password and extracted salt
 		SecretKey secretKey = generateAESKey(password, salt);
 
-		Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-		GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, ivBytes);
-		cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
-		byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+		// IV is the next 12 bytes, encrypted data the remaining bytes
+		Cipher cipher = cipher();
+		cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH, combined, SALT_LENGTH, IV_LENGTH));
+		int offset = SALT_LENGTH + IV_LENGTH;
+		byte[] decryptedBytes = cipher.doFinal(combined, offset, combined.length - offset);
 
-		return new String(decryptedBytes);
+		return new String(decryptedBytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compresses the provided data with this thread's {@link Deflater}, after its
+	 * length.
+	 *
+	 * @param data byte array
+	 * @return byte array of the length and deflated data, null if that's no
+	 *         smaller than the data
+	 */
+	private static byte[] deflate(byte[] data) {
+		if (data.length <= Integer.BYTES) {
+			return null;
+		}
+		Deflater deflater = DEFLATERS.get();
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		byte[] output = new byte[data.length];
+		ByteBuffer.wrap(output).putInt(data.length);
+		int length = Integer.BYTES;
+		while (!deflater.finished() && length < output.length) {
+			length += deflater.deflate(output, length, output.length - length);
+		}
+		try {
+			return deflater.finished() && length < output.length ? Arrays.copyOf(output, length) : null;
+		} finally {
+			Arrays.fill(output, (byte) 0);
+		}
+	}
+
+	/**
+	 * Encrypt data using the given key, derived once per journal by
+	 * {@link #generateAESKey(String, byte[])}. Only a fresh IV is generated per
+	 * call.
+	 *
+	 * @param data      byte array
+	 * @param secretKey {@link SecretKey}
+	 * @return byte array of version, IV and encrypted data
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 */
+	public static byte[] encrypt(byte[] data, SecretKey secretKey) throws NoSuchAlgorithmException,
+			NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+			BadPaddingException {
+		return encrypt(data, secretKey, false);
+	}
+
+	/**
+	 * Encrypt data using the given key, optionally compressing it first. Data that
+	 * doesn't get smaller is encrypted as it is.
+	 *
+	 * @param data      byte array
+	 * @param secretKey {@link SecretKey}
+	 * @param compress  boolean true to compress the data first
+	 * @return byte array of version, IV and encrypted data
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 */
+	public static byte[] encrypt(byte[] data, SecretKey secretKey, boolean compress) throws NoSuchAlgorithmException,
+			NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+			BadPaddingException {
+		byte[] deflated = compress ? deflate(data) : null;
+		if (deflated != null) {
+			try {
+				Cipher cipher = initEncrypt(secretKey);
+				byte[] combined = new byte[HEADER_LENGTH + cipher.getOutputSize(deflated.length)];
+				combined[0] = ENVELOPE_VERSION | COMPRESSED;
+				System.arraycopy(cipher.getIV(), 0, combined, 1, IV_LENGTH);
+				cipher.updateAAD(combined, 0, 1);
+				cipher.doFinal(deflated, 0, deflated.length, combined, HEADER_LENGTH);
+				return combined;
+			} catch (ShortBufferException e) {
+				throw new IllegalStateException(e);
+			} finally {
+				Arrays.fill(deflated, (byte) 0);
+			}
+		}
+		Cipher cipher = initEncrypt(secretKey);
+		byte[] combined = new byte[HEADER_LENGTH + cipher.getOutputSize(data.length)];
+		combined[0] = ENVELOPE_VERSION;
+		System.arraycopy(cipher.getIV(), 0, combined, 1, IV_LENGTH);
+		try {
+			cipher.doFinal(data, 0, data.length, combined, HEADER_LENGTH);
+		} catch (ShortBufferException e) {
+			throw new IllegalStateException(e);
+		}
+		return combined;
+	}
+
+	/**
+	 * Encrypt the remaining bytes of the provided buffer using the given key.
+	 *
+	 * @param data      {@link ByteBuffer}
+	 * @param secretKey {@link SecretKey}
+	 * @return {@link ByteBuffer} of version, IV and encrypted data, ready to be
+	 *         read
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 */
+	public static ByteBuffer encrypt(ByteBuffer data, SecretKey secretKey) throws NoSuchAlgorithmException,
+			NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+			BadPaddingException {
+		Cipher cipher = initEncrypt(secretKey);
+		ByteBuffer combined = ByteBuffer.allocate(HEADER_LENGTH + cipher.getOutputSize(data.remaining()));
+		combined.put(ENVELOPE_VERSION).put(cipher.getIV());
+		try {
+			cipher.doFinal(data, combined);
+		} catch (ShortBufferException e) {
+			throw new IllegalStateException(e);
+		}
+		return combined.flip();
+	}
+
+	/**
+	 * Encrypt data using the given key, derived once per journal by
+	 * {@link #generateAESKey(String, byte[])}. Only a fresh IV is generated per
+	 * call.
+	 *
+	 * @param data      {@link String}
+	 * @param secretKey {@link SecretKey}
+	 * @return {@link String}
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 */
+	public static String encrypt(String data, SecretKey secretKey) throws NoSuchAlgorithmException,
+			NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+			BadPaddingException {
+		return encrypt(data, secretKey, false);
+	}
+
+	/**
+	 * Encrypt data using the given key, optionally compressing it first, see
+	 * {@link #encrypt(byte[], SecretKey, boolean)}.
+	 *
+	 * @param data      {@link String}
+	 * @param secretKey {@link SecretKey}
+	 * @param compress  boolean true to compress the data first
+	 * @return {@link String}
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 * @throws IllegalBlockSizeException
+	 * @throws BadPaddingException
+	 */
+	public static String encrypt(String data, SecretKey secretKey, boolean compress) throws NoSuchAlgorithmException,
+			NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+			BadPaddingException {
+		byte[] combined = encrypt(data.getBytes(StandardCharsets.UTF_8), secretKey, compress);
+		return Base64.getEncoder().encodeToString(combined);
 	}
 
 	/**
@@ -90,24 +433,19 @@ public class Superstar {
 			BadPaddingException {
 
 		// Generate random salt for key derivation
-		byte[] salt = SecureRandom.getInstanceStrong().generateSeed(16);
+		byte[] salt = generateSalt();
 
 		// Generate AES key from the password and salt
 		SecretKey secretKey = generateAESKey(password, salt);
 
-		// Generate a random 96-bit IV
-		byte[] ivBytes = new byte[12];
-		SecureRandom.getInstanceStrong().nextBytes(ivBytes);
-		GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(128, ivBytes);
-		Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-		cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
-		byte[] encryptedData = cipher.doFinal(data.getBytes());
+		Cipher cipher = initEncrypt(secretKey);
+		byte[] encryptedData = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
 
 		// Concatenate salt, IV and encrypted data, then Base64 encode the whole thing
-		byte[] combined = new byte[salt.length + ivBytes.length + encryptedData.length];
-		System.arraycopy(salt, 0, combined, 0, salt.length);
-		System.arraycopy(ivBytes, 0, combined, salt.length, ivBytes.length);
-		System.arraycopy(encryptedData, 0, combined, salt.length + ivBytes.length, encryptedData.length);
+		byte[] combined = new byte[SALT_LENGTH + IV_LENGTH + encryptedData.length];
+		System.arraycopy(salt, 0, combined, 0, SALT_LENGTH);
+		System.arraycopy(cipher.getIV(), 0, combined, SALT_LENGTH, IV_LENGTH);
+		System.arraycopy(encryptedData, 0, combined, SALT_LENGTH + IV_LENGTH, encryptedData.length);
 
 		return Base64.getEncoder().encodeToString(combined);
 	}
@@ -121,12 +459,92 @@ public class Superstar {
 	 * @throws NoSuchAlgorithmException
 	 * @throws InvalidKeySpecException
 	 */
-	private static SecretKey generateAESKey(String password, byte[] salt)
+	static SecretKey generateAESKey(String password, byte[] salt)
 			throws NoSuchAlgorithmException, InvalidKeySpecException {
-		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 10000, 256);
-		SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-		byte[] encodedKey = factory.generateSecret(spec).getEncoded();
-		return new SecretKeySpec(encodedKey, "AES");
+		KeyDerivationEvent event = new KeyDerivationEvent();
+		event.begin();
+		PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, 256);
+		try {
+			SecretKeyFactory factory = KEY_FACTORIES.get();
+			if (factory == null) {
+				factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+				KEY_FACTORIES.set(factory);
+			}
+			byte[] encodedKey = factory.generateSecret(spec).getEncoded();
+			if (event.shouldCommit()) {
+				event.iterations = ITERATIONS;
+				event.commit();
+			}
+			return new SecretKeySpec(encodedKey, "AES");
+		} finally {
+			spec.clearPassword();
+		}
+	}
+
+	/**
+	 * Generate a random salt for key derivation.
+	 *
+	 * @return byte array
+	 */
+	static byte[] generateSalt() {
+		byte[] salt = new byte[SALT_LENGTH];
+		RANDOM.nextBytes(salt);
+		return salt;
+	}
+
+	/**
+	 * Decompresses data compressed by {@link #deflate(byte[])} with this thread's
+	 * {@link Inflater}.
+	 *
+	 * @param deflated byte array of the length and deflated data
+	 * @return byte array
+	 * @throws IllegalArgumentException if the data isn't as compressed
+	 */
+	private static byte[] inflate(byte[] deflated) {
+		int length = deflated.length < Integer.BYTES ? -1 : ByteBuffer.wrap(deflated).getInt();
+		if (length < 0) {
+			throw new IllegalArgumentException("Error: decryption failed, corrupt compressed entry.");
+		}
+		Inflater inflater = INFLATERS.get();
+		inflater.reset();
+		inflater.setInput(deflated, Integer.BYTES, deflated.length - Integer.BYTES);
+		byte[] data = new byte[length];
+		try {
+			int inflated = 0;
+			while (inflated < length && !inflater.finished()) {
+				int count = inflater.inflate(data, inflated, length - inflated);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				inflated += count;
+			}
+			if (inflated != length || !inflater.finished()) {
+				throw new IllegalArgumentException("Error: decryption failed, corrupt compressed entry.");
+			}
+			return data;
+		} catch (DataFormatException e) {
+			throw new IllegalArgumentException("Error: decryption failed, corrupt compressed entry.", e);
+		}
+	}
+
+	/**
+	 * Initializes this thread's {@link Cipher} for encryption with a random 96-bit
+	 * IV.
+	 *
+	 * @param secretKey {@link SecretKey}
+	 * @return {@link Cipher}
+	 * @throws NoSuchAlgorithmException
+	 * @throws NoSuchPaddingException
+	 * @throws InvalidKeyException
+	 * @throws InvalidAlgorithmParameterException
+	 */
+	private static Cipher initEncrypt(SecretKey secretKey) throws NoSuchAlgorithmException, NoSuchPaddingException,
+			InvalidKeyException, InvalidAlgorithmParameterException {
+		byte[] ivBytes = new byte[IV_LENGTH];
+		RANDOM.nextBytes(ivBytes);
+		Cipher cipher = cipher();
+		cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH, ivBytes));
+		return cipher;
 	}
 
 	/**
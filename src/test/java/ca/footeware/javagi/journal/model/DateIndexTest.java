@@ -0,0 +1,208 @@
+package ca.footeware.javagi.journal.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+/**
+ * Checks {@link DateIndex}, as {@link JournalManager} uses it to step between
+ * entries, against the linear search over every entry date that it replaced.
+ */
+class DateIndexTest {
+
+	private static final int START = (int) LocalDate.of(2020, 1, 1).toEpochDay();
+
+	/**
+	 * Checks the index steps from the provided date to the same entries as the
+	 * baseline.
+	 *
+	 * @param days     {@link Set} of {@link Integer} days with entries
+	 * @param selected int the selected day
+	 */
+	private static void assertSteps(Set<Integer> days, int selected) {
+		DateIndex index = index(days);
+		List<LocalDate> entryDates = days.stream().sorted().map(LocalDate::ofEpochDay).toList();
+		LocalDate selectedDate = LocalDate.ofEpochDay(selected);
+		assertEquals(baselineNext(selectedDate, entryDates), step(index.higher(selected), selectedDate),
+				"next from " + selectedDate + " in " + entryDates);
+		assertEquals(baselinePrevious(selectedDate, entryDates), step(index.lower(selected), selectedDate),
+				"previous from " + selectedDate + " in " + entryDates);
+	}
+
+	/**
+	 * The next entry date as {@link JournalManager#getNextEntryDate(LocalDate)}
+	 * found it before the date index, by walking every entry date.
+	 *
+	 * @param selectedDate {@link LocalDate}
+	 * @param entryDates   {@link List} of {@link LocalDate} in ascending order
+	 * @return {@link LocalDate} the selected date if there is no later entry
+	 */
+	private static LocalDate baselineNext(LocalDate selectedDate, List<LocalDate> entryDates) {
+		switch (entryDates.size()) {
+		case 0 -> {
+			return selectedDate;
+		}
+		case 1 -> {
+			return entryDates.get(0).isAfter(selectedDate) ? entryDates.get(0) : selectedDate;
+		}
+		default -> {
+			for (int i = 0; i < entryDates.size(); i++) {
+				LocalDate entryDate1 = entryDates.get(i);
+				if (selectedDate.isBefore(entryDate1)) {
+					return entryDate1;
+				}
+				if ((i + 1) < entryDates.size()) {
+					LocalDate entryDate2 = entryDates.get(i + 1);
+					if (entryDate1.isBefore(selectedDate) && entryDate2.isAfter(selectedDate)) {
+						return entryDate2;
+					}
+				}
+			}
+		}
+		}
+		return selectedDate;
+	}
+
+	/**
+	 * The previous entry date as
+	 * {@link JournalManager#getPreviousEntryDate(LocalDate)} found it before the
+	 * date index, by walking every entry date.
+	 *
+	 * @param selectedDate {@link LocalDate}
+	 * @param entryDates   {@link List} of {@link LocalDate} in ascending order
+	 * @return {@link LocalDate} the selected date if there is no earlier entry
+	 */
+	private static LocalDate baselinePrevious(LocalDate selectedDate, List<LocalDate> entryDates) {
+		switch (entryDates.size()) {
+		case 0 -> {
+			return selectedDate;
+		}
+		case 1 -> {
+			return entryDates.get(0).isBefore(selectedDate) ? entryDates.get(0) : selectedDate;
+		}
+		default -> {
+			for (int i = entryDates.size() - 1; i >= 0; i--) {
+				LocalDate entryDate1 = entryDates.get(i);
+				if (selectedDate.isAfter(entryDate1)) {
+					return entryDate1;
+				}
+				if ((i - 1) >= 0) {
+					LocalDate entryDate2 = entryDates.get(i - 1);
+					if (selectedDate.isAfter(entryDate2)
+							|| (entryDate2.isBefore(selectedDate) && entryDate1.isAfter(selectedDate))) {
+						return entryDate2;
+					}
+				}
+			}
+		}
+		}
+		return selectedDate;
+	}
+
+	/**
+	 * Makes an index of the provided days, added in the order given.
+	 *
+	 * @param days {@link Iterable} of {@link Integer}
+	 * @return {@link DateIndex}
+	 */
+	private static DateIndex index(Iterable<Integer> days) {
+		DateIndex index = new DateIndex();
+		days.forEach(index::add);
+		return index;
+	}
+
+	/**
+	 * Maps a lookup's result to a date as {@link JournalManager} does, falling back
+	 * to the selected date.
+	 *
+	 * @param day          long a day or {@link DateIndex#NONE}
+	 * @param selectedDate {@link LocalDate}
+	 * @return {@link LocalDate}
+	 */
+	private static LocalDate step(long day, LocalDate selectedDate) {
+		return day == DateIndex.NONE ? selectedDate : LocalDate.ofEpochDay(day);
+	}
+
+	/**
+	 * Sets of days with entries spread over a few years, from empty to several
+	 * hundred.
+	 *
+	 * @return {@link Arbitrary}
+	 */
+	@Provide
+	Arbitrary<Set<Integer>> days() {
+		return Arbitraries.integers().between(START, START + 3 * 365).set().ofMaxSize(400);
+	}
+
+	@Example
+	void emptyJournal() {
+		assertSteps(Set.of(), START);
+	}
+
+	@Property
+	void matchesBaseline(@ForAll("days") Set<Integer> days, @ForAll("selected") int selected) {
+		assertSteps(days, selected);
+	}
+
+	@Property
+	void matchesBaselineAroundEntries(@ForAll("days") Set<Integer> days, @ForAll int pick) {
+		if (days.isEmpty()) {
+			return;
+		}
+		List<Integer> sorted = new ArrayList<>(new TreeSet<>(days));
+		int entry = sorted.get(Math.floorMod(pick, sorted.size()));
+		// on an entry and either side of it
+		assertSteps(days, entry);
+		assertSteps(days, entry - 1);
+		assertSteps(days, entry + 1);
+		// before the first and after the last
+		assertSteps(days, sorted.get(0) - 1 - Math.floorMod(pick, 100));
+		assertSteps(days, sorted.get(sorted.size() - 1) + 1 + Math.floorMod(pick, 100));
+	}
+
+	@Property
+	void matchesSortedSetAfterRemovals(@ForAll("days") Set<Integer> added, @ForAll("days") Set<Integer> removed) {
+		DateIndex index = index(added);
+		removed.forEach(index::remove);
+		TreeSet<Integer> expected = new TreeSet<>(added);
+		expected.removeAll(removed);
+		assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), index.toArray());
+		for (int month = 0; month < 36; month++) {
+			LocalDate first = LocalDate.ofEpochDay(START).plusMonths(month);
+			int mask = 0;
+			for (int day : expected.subSet((int) first.toEpochDay(), (int) first.plusMonths(1).toEpochDay())) {
+				mask |= 1 << (LocalDate.ofEpochDay(day).getDayOfMonth() - 1);
+			}
+			assertEquals(mask, index.getMonth(first.getYear(), first.getMonthValue()), first.toString());
+		}
+	}
+
+	/**
+	 * Selected days in or around the range of the days with entries.
+	 *
+	 * @return {@link Arbitrary}
+	 */
+	@Provide
+	Arbitrary<Integer> selected() {
+		return Arbitraries.integers().between(START - 30, START + 3 * 365 + 30);
+	}
+
+	@Example
+	void singleEntry() {
+		assertSteps(Set.of(START), START - 1);
+		assertSteps(Set.of(START), START);
+		assertSteps(Set.of(START), START + 1);
+	}
+}
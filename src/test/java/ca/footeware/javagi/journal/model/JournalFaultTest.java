@@ -0,0 +1,247 @@
+package ca.footeware.javagi.journal.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Interrupts writes to a journal's files at random offsets, as a crash or a
+ * full disk would, and checks the journal still opens with every entry either
+ * as it was before the write or as it was written.
+ */
+class JournalFaultTest {
+
+	/**
+	 * Thrown from a progress callback to abort a write part way through.
+	 */
+	private static class Abort extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static final int ENTRIES = 60;
+	private static final String PASSWORD = "password";
+	private static final int RUNS = 10;
+
+	/**
+	 * Checks the journal in the provided file opens with the provided password and
+	 * that each entry is one of the two provided versions.
+	 *
+	 * @param file   {@link File}
+	 * @param before {@link Map} of each date to its text before the interrupted
+	 *               write
+	 * @param after  {@link Map} of each date to its text had the write finished
+	 * @param seed   long to report on failure
+	 * @throws Exception
+	 */
+	private static void assertOpens(File file, Map<String, String> before, Map<String, String> after, long seed)
+			throws Exception {
+		Journal journal = new Journal(file, PASSWORD);
+		assertTrue(journal.testPassword(), "seed " + seed);
+		for (String key : before.keySet()) {
+			String text = journal.getEntry(key);
+			assertTrue(text.equals(before.get(key)) || text.equals(after.get(key)),
+					"seed " + seed + ", entry " + key);
+		}
+	}
+
+	/**
+	 * Changes some of the provided entries in the provided journal, returning
+	 * what they'd be once saved.
+	 *
+	 * @param random  {@link Random}
+	 * @param journal {@link Journal}
+	 * @param entries {@link Map} of each date to its text
+	 * @return {@link Map} of each date to its changed text
+	 * @throws Exception
+	 */
+	private static Map<String, String> change(Random random, Journal journal, Map<String, String> entries)
+			throws Exception {
+		Map<String, String> changed = new TreeMap<>(entries);
+		for (String key : entries.keySet()) {
+			if (random.nextInt(3) == 0) {
+				changed.put(key, text(random, 1 + random.nextInt(8000)));
+				journal.addEntry(key, changed.get(key));
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Makes random text of the provided length. Random text barely compresses, so
+	 * the journal file spans several of the chunks progress is reported after.
+	 *
+	 * @param random {@link Random}
+	 * @param length int
+	 * @return {@link String}
+	 */
+	private static String text(Random random, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars);
+	}
+
+	@TempDir
+	private Path folder;
+
+	/**
+	 * Creates a journal of {@link #ENTRIES} entries, saved in full.
+	 *
+	 * @param random {@link Random}
+	 * @param name   {@link String} of the file
+	 * @return {@link Map} of each date to its text
+	 * @throws Exception
+	 */
+	private Map<String, String> create(Random random, String name) throws Exception {
+		Journal journal = new Journal(Files.createFile(folder.resolve(name)).toFile(), PASSWORD);
+		Map<String, String> entries = new TreeMap<>();
+		for (int i = 0; i < ENTRIES; i++) {
+			String key = LocalDate.of(2024, 1, 1).plusDays(i).toString();
+			entries.put(key, text(random, 1 + random.nextInt(8000)));
+			journal.addEntry(key, entries.get(key));
+		}
+		journal.save();
+		return entries;
+	}
+
+	/**
+	 * Aborts a full rewrite of the journal file after a random number of chunks.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void abortedFileWrite() throws Exception {
+		for (int run = 0; run < RUNS; run++) {
+			long seed = System.nanoTime();
+			Random random = new Random(seed);
+			String name = "abort" + run + ".txt";
+			Map<String, String> before = create(random, name);
+			File file = folder.resolve(name).toFile();
+			Journal journal = new Journal(file, PASSWORD);
+			Map<String, String> after = change(random, journal, before);
+			// rewrites the file in full
+			journal.setCompact(true);
+			double cut = random.nextDouble();
+			assertThrows(Abort.class, () -> journal.save(fraction -> {
+				if (fraction >= cut) {
+					throw new Abort();
+				}
+			}), "seed " + seed);
+			assertOpens(file, before, after, seed);
+			try (var files = Files.list(folder)) {
+				assertFalse(files.anyMatch(path -> path.getFileName().toString().endsWith(".tmp")), "seed " + seed);
+			}
+		}
+	}
+
+	/**
+	 * Aborts appending to the log after a random number of chunks.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void abortedLogAppend() throws Exception {
+		for (int run = 0; run < RUNS; run++) {
+			long seed = System.nanoTime();
+			Random random = new Random(seed);
+			String name = "append" + run + ".txt";
+			Map<String, String> before = create(random, name);
+			File file = folder.resolve(name).toFile();
+			Journal journal = new Journal(file, PASSWORD);
+			Map<String, String> after = change(random, journal, before);
+			double cut = random.nextDouble();
+			try {
+				journal.save(fraction -> {
+					if (fraction >= cut) {
+						throw new Abort();
+					}
+				});
+			} catch (Abort _) {
+				// expected unless the changes fit in one chunk
+			}
+			assertOpens(file, before, after, seed);
+		}
+	}
+
+	/**
+	 * Leaves the temporary file of a full rewrite cut at a random offset, as a
+	 * crash before it was moved over the journal file would, and checks the next
+	 * write removes it but not that of another file.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void crashedFileWrite() throws Exception {
+		for (int run = 0; run < RUNS; run++) {
+			long seed = System.nanoTime();
+			Random random = new Random(seed);
+			String name = "crash" + run + ".txt";
+			Map<String, String> before = create(random, name);
+			Path path = folder.resolve(name);
+			byte[] contents = Files.readAllBytes(path);
+			Path stale = Files.createTempFile(folder, name + ".tmp-", ".tmp");
+			Files.write(stale, Arrays.copyOf(contents, random.nextInt(contents.length)));
+			Path sibling = Files.createTempFile(folder, name + ".idx.tmp-", ".tmp");
+			assertOpens(path.toFile(), before, before, seed);
+			AtomicWriter.write(path, ByteBuffer.wrap(contents), 0, _ -> {
+			});
+			assertFalse(Files.exists(stale), "seed " + seed);
+			assertTrue(Files.exists(sibling), "seed " + seed);
+			Files.delete(sibling);
+		}
+	}
+
+	/**
+	 * Cuts the log at a random offset within the records of the last save, as a
+	 * crash while appending would.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	void tornLogAppend() throws Exception {
+		for (int run = 0; run < RUNS; run++) {
+			long seed = System.nanoTime();
+			Random random = new Random(seed);
+			String name = "torn" + run + ".txt";
+			Map<String, String> before = create(random, name);
+			File file = folder.resolve(name).toFile();
+			Path log = Path.of(file.getPath() + ".log");
+			Journal journal = new Journal(file, PASSWORD);
+			Map<String, String> after = change(random, journal, before);
+			journal.save();
+			long size = Files.size(log);
+			try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+				channel.truncate(random.nextLong(size + 1));
+			}
+			assertOpens(file, before, after, seed);
+			// the torn record was dropped, so the journal saves and opens again
+			Journal reopened = new Journal(file, PASSWORD);
+			Map<String, String> again = change(random, reopened, before);
+			reopened.save();
+			Journal saved = new Journal(file, PASSWORD);
+			for (Map.Entry<String, String> entry : again.entrySet()) {
+				if (!entry.getValue().equals(before.get(entry.getKey()))) {
+					assertEquals(entry.getValue(), saved.getEntry(entry.getKey()), "seed " + seed);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package ca.footeware.javagi.journal.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.crypto.SecretKey;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Combinators;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+/**
+ * Checks {@link SearchIndex} against a search of every entry's text, after
+ * random puts and removes and after being written and read back.
+ */
+class SearchIndexTest {
+
+	/**
+	 * Adds or, if the text is null, removes the entry of a day.
+	 *
+	 * @param day  int
+	 * @param text {@link String} may be null
+	 */
+	private record Change(int day, String text) {
+	}
+
+	private static final List<String> VOCABULARY = List.of("apple", "apricot", "banana", "band", "cherry", "day",
+			"days", "ÉTÉ", "été", "x");
+
+	/**
+	 * Finds the days whose text has every word of the query as a prefix of one of
+	 * its words, by reading every text.
+	 *
+	 * @param texts {@link Map} of days to texts
+	 * @param query {@link String}
+	 * @return int array of days, in ascending order
+	 */
+	private static int[] scan(Map<Integer, String> texts, String query) {
+		Set<String> prefixes = SearchIndex.tokenize(query);
+		if (prefixes.isEmpty()) {
+			return new int[0];
+		}
+		return texts.entrySet().stream().filter(entry -> {
+			Set<String> words = SearchIndex.tokenize(entry.getValue());
+			return prefixes.stream().allMatch(prefix -> words.stream().anyMatch(word -> word.startsWith(prefix)));
+		}).mapToInt(Map.Entry::getKey).toArray();
+	}
+
+	@Provide
+	Arbitrary<List<Change>> changes() {
+		Arbitrary<String> text = Arbitraries.of(VOCABULARY).list().ofMaxSize(8).map(words -> String.join(" ", words))
+				.injectNull(0.2);
+		return Combinators.combine(Arbitraries.integers().between(0, 40), text).as(Change::new).list()
+				.ofMaxSize(80);
+	}
+
+	@Example
+	void dirtyUntilMarkedWritten() {
+		SearchIndex index = new SearchIndex();
+		assertFalse(index.isDirty());
+		index.put(1, "AAAA", "first");
+		int changes = index.getChanges();
+		index.toBytes();
+		assertTrue(index.isDirty());
+		// changed while being written
+		index.put(2, "AAAA", "second");
+		index.markWritten(changes);
+		assertTrue(index.isDirty());
+		index.markWritten(index.getChanges());
+		assertFalse(index.isDirty());
+	}
+
+	@Property
+	void matchesScan(@ForAll("changes") List<Change> changes, @ForAll("queries") String query) throws IOException {
+		SearchIndex index = new SearchIndex();
+		Map<Integer, String> texts = new TreeMap<>();
+		for (Change change : changes) {
+			if (change.text() == null) {
+				index.remove(change.day());
+				texts.remove(change.day());
+			} else {
+				index.put(change.day(), "AAAA", change.text());
+				texts.put(change.day(), change.text());
+			}
+		}
+		int[] expected = scan(texts, query);
+		assertArrayEquals(expected, index.search(query));
+		assertArrayEquals(texts.keySet().stream().mapToInt(Integer::intValue).toArray(), index.getDays());
+
+		// read back, then changed again, the per-day words still remove everything
+		SearchIndex read = SearchIndex.fromBytes(index.toBytes());
+		assertArrayEquals(expected, read.search(query));
+		for (Change change : changes) {
+			read.remove(change.day());
+		}
+		assertArrayEquals(new int[0], read.search(query));
+		assertArrayEquals(new int[0], read.getDays());
+	}
+
+	@Provide
+	Arbitrary<String> queries() {
+		return Arbitraries.of("a", "ap", "apple", "ban", "band banana", "d", "day x", "été", "Ét", "zebra", " ");
+	}
+
+	@Example
+	void tagChangesWhenReencrypted() throws Exception {
+		SecretKey key = Superstar.generateAESKey("password", Superstar.generateSalt());
+		String first = Superstar.encrypt("the same text", key);
+		String second = Superstar.encrypt("the same text", key);
+		SearchIndex index = new SearchIndex();
+		index.put(1, first, "the same text");
+		assertTrue(index.isCurrent(1, first));
+		assertFalse(index.isCurrent(1, second));
+		index.rehash(1, first, second);
+		assertTrue(index.isCurrent(1, second));
+		assertTrue(SearchIndex.fromBytes(index.toBytes()).isCurrent(1, second));
+	}
+}